@@ -0,0 +1,269 @@
+// File: CheckState.java
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * CheckState - checked flags indexed by dense FileTreeStore id, plus per-folder checked file counts.
+ * A default state covers every id not set explicitly, and a folder's child block (contiguous ids) is
+ * changed with one range operation.
+ * Each listed folder keeps the number and bytes of files below it whose state is not the default; a toggle
+ * adjusts its ancestors in O(depth), which gives tri-state rendering and the selection totals without
+ * traversal. Select-all/deselect-all swaps the default and drops every flag and total at once: O(1).
+ * The flags can be exported, restored (snapshots) and carried over to a rescanned store by path;
+ * a folder refreshed in place only recounts its own children.
+ */
+public class CheckState {
+    public enum State { NONE, PARTIAL, ALL }
+
+    private FileTreeStore store;
+    private boolean defaultState;
+    private BitSet differs = new BitSet();        // ids whose flag is not the default
+    private int[] differCount = new int[0];       // leaves below each listed folder not in the default state
+    private long[] differBytes = new long[0];
+    private int[] epochOf = new int[0];           // totals of a folder are zero unless stamped with epoch
+    private int epoch = 1;
+    private int checkedUnlisted;                  // checked folders that were never listed
+
+    // Attach to a new tree with every node in the given state
+    public void reset(FileTreeStore store, boolean state) {
+        this.store = store;
+        setAll(state);
+    }
+
+    public FileTreeStore getStore() {
+        return store;
+    }
+
+    public boolean isChecked(int id) {
+        return differs.get(id) != defaultState;
+    }
+
+    // Every id (including ids added later) takes this state
+    public void setAll(boolean state) {
+        defaultState = state;
+        differs = new BitSet();
+        epoch++;
+        checkedUnlisted = state && store != null ? store.getUnlistedCount() : 0;
+    }
+
+    public boolean getDefaultState() {
+        return defaultState;
+    }
+
+    // Copy of the ids whose flag differs from the default
+    public BitSet getExplicitFlags() {
+        return (BitSet) differs.clone();
+    }
+
+    // Attach to a store with saved flags; folder totals are rebuilt bottom-up in one pass
+    public void restore(FileTreeStore store, boolean defaultState, BitSet explicit) {
+        this.store = store;
+        this.defaultState = defaultState;
+        differs = (BitSet) explicit.clone();
+        epoch++;
+        ensureCapacity();
+        checkedUnlisted = 0;
+        // children always have higher ids than their parent, so descending ids visit them first
+        for (int id = store.size() - 1; id >= 0; id--) {
+            if (store.getChildCount(id) > 0 && store.getLeafCount(id) > 0) {
+                setFlag(id, checkedLeaves(id) == store.getLeafCount(id));
+            }
+            if (store.isUnlisted(id) && isChecked(id)) checkedUnlisted++;
+            int p = store.getParent(id);
+            if (p >= 0) setDiffering(p, differingLeaves(p) + differingLeaves(id), differingBytes(p) + differingBytes(id));
+        }
+    }
+
+    // Flags for a rescanned store: entries keep their state by previous id, new entries take their parent's
+    public BitSet carryOver(FileTreeStore rescanned) {
+        BitSet out = new BitSet();
+        for (int id = 0; id < rescanned.size(); id++) {
+            int prev = rescanned.getPreviousId(id);
+            boolean checked;
+            if (prev >= 0 && prev < store.size()) {
+                checked = isChecked(prev);
+            } else {
+                int p = rescanned.getParent(id);
+                checked = p >= 0 ? out.get(p) != defaultState : defaultState;
+            }
+            if (checked != defaultState) out.set(id);
+        }
+        return out;
+    }
+
+    // Tri-state of a node: folders with files below them are aggregated, anything else uses its flag
+    public State getState(int id) {
+        if (store.getChildCount(id) > 0 && store.getLeafCount(id) > 0) {
+            int checked = checkedLeaves(id);
+            if (checked == 0) return State.NONE;
+            return checked == store.getLeafCount(id) ? State.ALL : State.PARTIAL;
+        }
+        return isChecked(id) ? State.ALL : State.NONE;
+    }
+
+    // Checked files below the root (unlisted folders excluded) and their bytes
+    public int getCheckedFileCount() {
+        return store == null ? 0 : checkedLeaves(0) - checkedUnlisted;
+    }
+
+    public long getCheckedBytes() {
+        return store == null ? 0L : checkedLeafBytes(0);
+    }
+
+    // Checked folders whose children were never listed (lazy mode)
+    public int getCheckedUnlistedCount() {
+        return checkedUnlisted;
+    }
+
+    // Check or uncheck a node and everything below it, then update the ancestors
+    public void setSubtree(int id, boolean state) {
+        ensureCapacity();
+        int beforeCount = differingLeaves(id);
+        long beforeBytes = differingBytes(id);
+        if (store.isUnlisted(id) && isChecked(id) != state) checkedUnlisted += state ? 1 : -1;
+        setFlag(id, state);
+        setDescendants(id, state, false);
+        updateAncestors(id, differingLeaves(id) - beforeCount, differingBytes(id) - beforeBytes);
+    }
+
+    // A lazy folder was just listed: its new children take its state, ancestors get the new totals
+    public void childrenListed(int id) {
+        ensureCapacity();
+        boolean state = isChecked(id);
+        if (state) checkedUnlisted--;
+        int beforeCount = state != defaultState ? 1 : 0; // it counted as one leaf while unlisted
+        setDescendants(id, state, true);
+        updateAncestors(id, differingLeaves(id) - beforeCount, differingBytes(id));
+    }
+
+    // Live refresh: make 'children' the children of a listed folder (FileTreeStore.setChildren).
+    // Entries that stay keep their flags; 'added' entries (appended detached) and everything below
+    // them take 'state'. The folder and its ancestors get the new totals in O(children + depth).
+    // Returns the dropped ids
+    public int[] replaceChildren(int dir, int[] children, int[] added, boolean state) {
+        int beforeCount = differingLeaves(dir);
+        long beforeBytes = differingBytes(dir);
+        if (store.isUnlisted(dir) && isChecked(dir)) checkedUnlisted--;
+        int[] removed = store.setChildren(dir, children);
+        ensureCapacity();
+        if (checkedUnlisted > 0) {
+            for (int r : removed) checkedUnlisted -= checkedUnlistedBelow(r);
+        }
+        for (int a : added) {
+            setFlag(a, state);
+            if (store.isUnlisted(a) && state) checkedUnlisted++;
+            setDescendants(a, state, true);
+        }
+        int count = 0;
+        long bytes = 0L;
+        for (int c : children) {
+            count += differingLeaves(c);
+            bytes += differingBytes(c);
+        }
+        setDiffering(dir, count, bytes);
+        if (store.getLeafCount(dir) > 0) setFlag(dir, checkedLeaves(dir) == store.getLeafCount(dir));
+        updateAncestors(dir, differingLeaves(dir) - beforeCount, differingBytes(dir) - beforeBytes);
+        return removed;
+    }
+
+    // Checked unlisted folders in the subtree of id
+    private int checkedUnlistedBelow(int id) {
+        int found = 0;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = id;
+        while (top > 0) {
+            int node = stack[--top];
+            if (store.isUnlisted(node) && isChecked(node)) found++;
+            for (int i = 0; i < store.getChildCount(node); i++) {
+                if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+                stack[top++] = store.getChild(node, i);
+            }
+        }
+        return found;
+    }
+
+    // Set the flag and aggregate of every listed descendant; each child block is one range.
+    // 'added' means the descendants are new to the tree and were not counted before
+    private void setDescendants(int id, boolean state, boolean added) {
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = id;
+        while (top > 0) {
+            int dir = stack[--top];
+            int count = store.getChildCount(dir);
+            if (count <= 0) continue;
+            int[] list = store.getChildList(dir); // folders refreshed in place have no contiguous block
+            int first = store.getFirstChild(dir);
+            for (int i = 0; i < count; i++) {
+                int child = list == null ? first + i : list[i];
+                if (store.isUnlisted(child)) {
+                    if (added) {
+                        if (state) checkedUnlisted++;
+                    } else if (isChecked(child) != state) {
+                        checkedUnlisted += state ? 1 : -1;
+                    }
+                }
+                if (list != null) setFlag(child, state); // after the comparison above
+                if (store.getChildCount(child) > 0) {
+                    if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+                    stack[top++] = child;
+                }
+            }
+            if (list == null) differs.set(first, first + count, state != defaultState);
+            boolean differing = state != defaultState;
+            setDiffering(dir, differing ? store.getLeafCount(dir) : 0, differing ? store.getLeafBytes(dir) : 0L);
+        }
+    }
+
+    // Add a change to every ancestor's totals; an ancestor is flagged checked when all its files are
+    private void updateAncestors(int id, int deltaCount, long deltaBytes) {
+        for (int p = store.getParent(id); p >= 0; p = store.getParent(p)) {
+            setDiffering(p, differingLeaves(p) + deltaCount, differingBytes(p) + deltaBytes);
+            if (store.getLeafCount(p) > 0) setFlag(p, checkedLeaves(p) == store.getLeafCount(p));
+        }
+    }
+
+    // Checked leaves a node contributes to its parent
+    private int checkedLeaves(int id) {
+        int differing = differingLeaves(id);
+        return defaultState ? store.getLeafCount(id) - differing : differing;
+    }
+
+    private long checkedLeafBytes(int id) {
+        long differing = differingBytes(id);
+        return defaultState ? store.getLeafBytes(id) - differing : differing;
+    }
+
+    // Leaves a node contributes to its parent whose state is not the default
+    private int differingLeaves(int id) {
+        if (store.getChildCount(id) > 0) return id < epochOf.length && epochOf[id] == epoch ? differCount[id] : 0;
+        return differs.get(id) ? store.getLeafCount(id) : 0;
+    }
+
+    private long differingBytes(int id) {
+        if (store.getChildCount(id) > 0) return id < epochOf.length && epochOf[id] == epoch ? differBytes[id] : 0L;
+        return differs.get(id) ? store.getLeafBytes(id) : 0L;
+    }
+
+    private void setDiffering(int dir, int count, long bytes) {
+        epochOf[dir] = epoch;
+        differCount[dir] = count;
+        differBytes[dir] = bytes;
+    }
+
+    private void setFlag(int id, boolean state) {
+        differs.set(id, state != defaultState);
+    }
+
+    // Folders appended since the last reset start with no differing leaves
+    private void ensureCapacity() {
+        int n = store.size();
+        if (n <= epochOf.length) return;
+        int capacity = Math.max(n, epochOf.length * 2);
+        differCount = Arrays.copyOf(differCount, capacity);
+        differBytes = Arrays.copyOf(differBytes, capacity);
+        epochOf = Arrays.copyOf(epochOf, capacity);
+    }
+}
@@ -0,0 +1,318 @@
+// File: ChunkedOutput.java
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * ChunkedOutput - the file or files a combine writes to. Without a limit this is just the output file.
+ * With a limit, segments (header, body, separator) go to numbered files next to it (combined-001.txt,
+ * combined-002.txt, ...) and the next chunk is started when a segment would not fit the current one.
+ * A file is only split when it alone exceeds the limit; it is then streamed across chunks, cut at line
+ * ends where possible, and every part after the first starts with a "(continued)" header.
+ * combined-index.txt lists which file (or part) went to which chunk, written as the chunks are.
+ * With a codec every file is compressed as it is written (combined-001.txt.gz); limits count the
+ * uncompressed bytes, which is what tools reading the chunks see.
+ */
+public final class ChunkedOutput implements Closeable {
+    // How a chunk is measured; tokens are approximated as 4 bytes each
+    public enum Unit {
+        BYTES, LINES, TOKENS
+    }
+
+    // Maximum size of one chunk
+    public static final class Limit {
+        public final long max;
+        public final Unit unit;
+
+        public Limit(long max, Unit unit) {
+            long min = unit == Unit.LINES ? 16 : unit == Unit.TOKENS ? 1024 : 4096;
+            if (max < min) throw new IllegalArgumentException("Chunk limit must be at least " + min + " " + unit.name().toLowerCase(Locale.ROOT));
+            this.max = max;
+            this.unit = unit;
+        }
+
+        // "8M", "500K bytes", "20000 lines", "100K tokens"; IllegalArgumentException when malformed
+        public static Limit parse(String text) {
+            String[] parts = text.trim().split("\\s+");
+            if (parts.length > 2 || parts[0].isEmpty()) throw new IllegalArgumentException("Invalid chunk limit: " + text);
+            Unit unit = Unit.BYTES;
+            if (parts.length == 2) {
+                String u = parts[1].toLowerCase(Locale.ROOT);
+                if (u.startsWith("line")) unit = Unit.LINES;
+                else if (u.startsWith("token")) unit = Unit.TOKENS;
+                else if (!u.startsWith("byte")) throw new IllegalArgumentException("Chunk limit unit must be bytes, lines or tokens");
+            }
+            return new Limit(FileMatcher.parseSize(parts[0]), unit);
+        }
+
+        @Override
+        public String toString() {
+            return max + " " + unit.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final byte NEWLINE = '\n';
+
+    private final Path output;
+    private final Limit limit;           // null: everything goes to output
+    private final long maxBytes;         // Long.MAX_VALUE when not limited by size
+    private final long maxLines;         // Long.MAX_VALUE when not limited by lines
+    private final List<Path> chunks = new ArrayList<>();
+    private final BufferedWriter index;
+    private final byte[] splitBuffer;
+    private final CompressedChannel.Codec codec;
+    private final ExecutorService compressors; // PARALLEL_GZIP workers
+    private final int compressorCount;
+    private FileChannel file;
+    private CompressedChannel compressor; // null when not compressing
+    private WritableByteChannel channel;  // file or compressor
+    private long chunkLines;             // lines in the current chunk (line limits only)
+    private long closedBytes;            // uncompressed size of the finished chunks
+    private long closedCompressedBytes;
+
+    // output is the name of the (first) file including any codec suffix, e.g. combined.txt.gz
+    public ChunkedOutput(Path output, Limit limit, CompressedChannel.Codec codec, ExecutorService compressors,
+                         int compressorCount) throws IOException {
+        this.output = output;
+        this.limit = limit;
+        this.codec = codec;
+        this.compressors = compressors;
+        this.compressorCount = compressorCount;
+        this.maxBytes = limit == null || limit.unit == Unit.LINES ? Long.MAX_VALUE
+                : limit.unit == Unit.TOKENS ? limit.max * 4 : limit.max;
+        this.maxLines = limit != null && limit.unit == Unit.LINES ? limit.max : Long.MAX_VALUE;
+        this.splitBuffer = limit != null ? new byte[64 * 1024] : null;
+        if (limit != null) {
+            index = Files.newBufferedWriter(indexFile(output), StandardCharsets.UTF_8);
+            index.write("# chunk\tfile\tpart\n");
+        } else {
+            index = null;
+        }
+        openChunk();
+    }
+
+    // combined.txt -> combined-001.txt, combined.txt.gz -> combined-001.txt.gz
+    public static Path chunkFile(Path output, int number) {
+        String name = output.getFileName().toString();
+        String suffix = name.endsWith(CompressedChannel.SUFFIX) ? CompressedChannel.SUFFIX : "";
+        name = name.substring(0, name.length() - suffix.length());
+        int dot = name.lastIndexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name;
+        String ext = dot > 0 ? name.substring(dot) : "";
+        return output.resolveSibling(String.format("%s-%03d%s%s", stem, number, ext, suffix));
+    }
+
+    // combined.txt -> combined-index.txt (never compressed)
+    public static Path indexFile(Path output) {
+        String name = output.getFileName().toString();
+        if (name.endsWith(CompressedChannel.SUFFIX)) name = name.substring(0, name.length() - CompressedChannel.SUFFIX.length());
+        int dot = name.lastIndexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name;
+        return output.resolveSibling(stem + "-index.txt");
+    }
+
+    public boolean isChunked() {
+        return limit != null;
+    }
+
+    // Whether segment line counts are needed (so bodies need not be scanned otherwise)
+    public boolean countsLines() {
+        return maxLines != Long.MAX_VALUE;
+    }
+
+    // Channel of the current chunk; a FileChannel unless compressing
+    public WritableByteChannel channel() {
+        return channel;
+    }
+
+    // Uncompressed bytes in the current chunk
+    public long position() throws IOException {
+        return compressor != null ? compressor.getRawBytes() : file.position();
+    }
+
+    public List<Path> getChunks() {
+        return chunks;
+    }
+
+    // Uncompressed bytes in all chunks so far
+    public long getBytesWritten() throws IOException {
+        return closedBytes + (channel.isOpen() ? position() : 0);
+    }
+
+    // Bytes on disk in all chunks so far (equal to getBytesWritten without a codec); final once closed
+    public long getCompressedBytesWritten() throws IOException {
+        if (!channel.isOpen()) return closedCompressedBytes;
+        return closedCompressedBytes + (compressor != null ? compressor.getCompressedBytes() : file.position());
+    }
+
+    // Whether a segment of this size fits in one chunk
+    public boolean fits(long bytes, long lines) {
+        return bytes <= maxBytes && lines <= maxLines;
+    }
+
+    // Start a segment that fits a chunk: roll over first when it does not fit the current one
+    public void begin(String path, long bytes, long lines) throws IOException {
+        if (limit == null) return;
+        if (!isEmpty() && (position() + bytes > maxBytes || chunkLines + lines > maxLines)) {
+            nextChunk();
+        }
+        chunkLines += lines;
+        indexLine(path, 0);
+    }
+
+    // Write a segment larger than a chunk, streaming body across chunks. continued is written
+    // at the start of each further chunk; trailer always lands after the last part of the body
+    public void writeSplit(String path, byte[] header, ReadableByteChannel body, byte[] continued, byte[] trailer)
+            throws IOException {
+        long trailerLines = countLines(trailer, 0, trailer.length);
+        if (!isEmpty() && (position() + header.length + trailer.length >= maxBytes
+                || chunkLines + countLines(header, 0, header.length) + trailerLines >= maxLines)) {
+            nextChunk();
+        }
+        int part = 1;
+        indexLine(path, part);
+        write(header, 0, header.length);
+        ByteBuffer buf = ByteBuffer.wrap(splitBuffer);
+        boolean wroteBody = false;          // something of the body is in the current chunk
+        int n;
+        while ((n = body.read(buf)) != -1) {
+            if (n == 0) continue;
+            int from = 0;
+            int to = buf.position();
+            while (from < to) {
+                int cut = cut(splitBuffer, from, to, wroteBody, trailer.length, trailerLines);
+                if (cut > from) {
+                    write(splitBuffer, from, cut);
+                    wroteBody = true;
+                    from = cut;
+                }
+                if (from < to) {
+                    // the current chunk is full
+                    nextChunk();
+                    indexLine(path, ++part);
+                    write(continued, 0, continued.length);
+                    wroteBody = false;
+                }
+            }
+            buf.clear();
+        }
+        write(trailer, 0, trailer.length);
+    }
+
+    // End of the data in [from, to) that still fits the current chunk, keeping room for the trailer;
+    // prefers to end after a newline. Always makes progress on an otherwise empty chunk
+    private int cut(byte[] data, int from, int to, boolean wroteBody, long trailerBytes, long trailerLines)
+            throws IOException {
+        if (maxLines != Long.MAX_VALUE) {
+            long room = maxLines - chunkLines - trailerLines;
+            if (room <= 0) {
+                if (wroteBody) return from;
+                room = 1;
+            }
+            for (int i = from; i < to; i++) {
+                if (data[i] == NEWLINE && room-- <= 1) return i + 1;
+            }
+            return to;
+        }
+        long room = maxBytes - position() - trailerBytes;
+        if (room >= to - from) return to;
+        if (room <= 0) return wroteBody ? from : from + 1;
+        int end = from + (int) room;
+        for (int i = end - 1; i >= from; i--) {
+            if (data[i] == NEWLINE) return i + 1;
+        }
+        return wroteBody ? from : end; // no line end in reach: cut mid-line only on a chunk with no body yet
+    }
+
+    private void write(byte[] data, int from, int to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data, from, to - from);
+        while (buffer.hasRemaining()) channel.write(buffer);
+        if (maxLines != Long.MAX_VALUE) chunkLines += countLines(data, from, to);
+    }
+
+    private boolean isEmpty() throws IOException {
+        return position() == 0;
+    }
+
+    private void indexLine(String path, int part) throws IOException {
+        if (index == null) return;
+        index.write(chunks.get(chunks.size() - 1).getFileName() + "\t" + path.replace('\n', ' ').replace('\t', ' ')
+                + "\t" + (part == 0 ? "" : String.valueOf(part)) + "\n");
+    }
+
+    private void openChunk() throws IOException {
+        Path path = limit == null ? output : chunkFile(output, chunks.size() + 1);
+        file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        compressor = codec == CompressedChannel.Codec.NONE ? null
+                : new CompressedChannel(file, codec == CompressedChannel.Codec.PARALLEL_GZIP ? compressors : null,
+                compressorCount);
+        channel = compressor != null ? compressor : file;
+        chunks.add(path);
+        chunkLines = 0;
+    }
+
+    private void closeChunk() throws IOException {
+        closedBytes += position();
+        channel.close();
+        closedCompressedBytes += compressor != null ? compressor.getCompressedBytes() : Files.size(chunks.get(chunks.size() - 1));
+    }
+
+    private void nextChunk() throws IOException {
+        closeChunk();
+        openChunk();
+    }
+
+    // Close the last chunk and the index; numbered chunks left over from a longer earlier run are removed
+    @Override
+    public void close() throws IOException {
+        try {
+            if (channel.isOpen()) closeChunk();
+        } finally {
+            if (index != null) {
+                index.close();
+                for (int n = chunks.size() + 1; Files.deleteIfExists(chunkFile(output, n)); n++) {
+                    // stale chunk removed
+                }
+            }
+        }
+    }
+
+    public static long countLines(byte[] data, int from, int to) {
+        long lines = 0;
+        for (int i = from; i < to; i++) {
+            if (data[i] == NEWLINE) lines++;
+        }
+        return lines;
+    }
+
+    // Newlines in a whole file (read through the page cache before it is copied)
+    public static long countLines(FileChannel source, ByteBuffer buffer) throws IOException {
+        long lines = 0;
+        long position = 0;
+        buffer.clear();
+        int n;
+        while ((n = source.read(buffer, position)) > 0) {
+            position += n;
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                if (buffer.get() == NEWLINE) lines++;
+            }
+            buffer.clear();
+        }
+        return lines;
+    }
+}
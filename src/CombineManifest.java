@@ -0,0 +1,118 @@
+// File: CombineManifest.java
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CombineManifest - sidecar of a combined output file listing where each source file's segment
+ * (header, body, separator) was written: path, size, mtime, offset and length.
+ * An incremental combine uses it to copy the segments of unchanged files straight from the previous
+ * output. The manifest is only trusted while the output still has the size and modification time
+ * recorded in it and was written with the same header and binary settings.
+ * Stored as UTF-8 text, one tab-separated segment per line with the path last.
+ */
+public final class CombineManifest {
+    private static final String MAGIC = "# combine-manifest 2";
+
+    // Segment kinds: a file body, or the one-line summary of a binary file
+    public static final String TEXT = "text";
+    public static final String SUMMARY = "summary";
+
+    // One segment of the output
+    public static final class Entry {
+        public final String path;
+        public final long size;
+        public final long lastModified;
+        public final String kind;
+        public final long offset;
+        public final long length;
+
+        public Entry(String path, long size, long lastModified, String kind, long offset, long length) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.kind = kind;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        // Same segment at another offset of the new output
+        public Entry movedTo(long newOffset) {
+            return new Entry(path, size, lastModified, kind, newOffset, length);
+        }
+    }
+
+    private final Map<String, Entry> byPath;
+
+    private CombineManifest(Map<String, Entry> byPath) {
+        this.byPath = byPath;
+    }
+
+    public static Path fileFor(Path output) {
+        return output.resolveSibling(output.getFileName() + ".manifest");
+    }
+
+    // Manifest of the current output, or null when there is none or it no longer describes the output
+    public static CombineManifest load(Path output, String settingsKey) throws IOException {
+        Path file = fileFor(output);
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!MAGIC.equals(in.readLine()) || !settingsKey.equals(in.readLine())) return null;
+            String[] out = in.readLine().split("\t");
+            if (Long.parseLong(out[0]) != Files.size(output)
+                    || Long.parseLong(out[1]) != Files.getLastModifiedTime(output).toMillis()) return null;
+            Map<String, Entry> byPath = new HashMap<>();
+            for (String line; (line = in.readLine()) != null; ) {
+                String[] f = line.split("\t", 6);
+                if (f.length < 6) return null;
+                Entry e = new Entry(f[5], Long.parseLong(f[0]), Long.parseLong(f[1]), f[2],
+                        Long.parseLong(f[3]), Long.parseLong(f[4]));
+                byPath.put(e.path, e);
+            }
+            return new CombineManifest(byPath);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (RuntimeException e) {
+            return null; // truncated or hand-edited: combine from scratch
+        }
+    }
+
+    // Segment that can be copied for a file with this path, size and modification time (as on disk now)
+    public Entry reusable(Path path, long size, long lastModified) {
+        Entry e = byPath.get(path.toString());
+        if (e == null || e.size != size || e.lastModified != lastModified) return null;
+        return e;
+    }
+
+    // Write the manifest of a finished output (after it was renamed into place)
+    public static void save(Path output, String settingsKey, List<Entry> entries) throws IOException {
+        Path file = fileFor(output);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            w.write(MAGIC + "\n" + settingsKey + "\n");
+            w.write(Files.size(output) + "\t" + Files.getLastModifiedTime(output).toMillis() + "\n");
+            StringBuilder sb = new StringBuilder(128);
+            for (Entry e : entries) {
+                if (e.path.indexOf('\n') >= 0 || e.path.indexOf('\r') >= 0) continue; // cannot be stored; rewritten next time
+                sb.setLength(0);
+                sb.append(e.size).append('\t').append(e.lastModified).append('\t').append(e.kind).append('\t').append(e.offset).append('\t').append(e.length)
+                        .append('\t').append(e.path).append('\n');
+                w.write(sb.toString());
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Remove the manifest, e.g. after a plain (non-incremental) combine replaced the output
+    public static void delete(Path output) throws IOException {
+        Files.deleteIfExists(fileFor(output));
+    }
+}
@@ -0,0 +1,345 @@
+// File: CombinerCli.java
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * CombinerCli - headless entry point: scans a folder and combines the matching files without Swing/AWT.
+ * Progress and problems go to stderr; the exit code is 0 on success, 1 when any file or folder
+ * could not be read, 2 on bad arguments or when the output cannot be written.
+ */
+public class CombinerCli {
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_READ_FAILURES = 1;
+    public static final int EXIT_ERROR = 2;
+
+    private static final long PROGRESS_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final PrintStream err;
+    private File root;
+    private File output;
+    private final List<String> includes = new ArrayList<>();
+    private final List<String> excludes = new ArrayList<>();
+    private long minSize = 0;
+    private long maxSize = Long.MAX_VALUE;
+    private boolean fullPaths;
+    private boolean incremental;
+    private boolean dedupe;
+    private ChunkedOutput.Limit chunkLimit;
+    private CompressedChannel.Codec codec = CompressedChannel.Codec.NONE;
+    private FileCombiner.BinaryPolicy binaryPolicy = FileCombiner.BinaryPolicy.SUMMARIZE;
+    private boolean verbose;
+    private boolean useIgnoreFiles = true;
+    private final List<String> ignorePatterns = new ArrayList<>();
+    private int threads = DirectoryScanner.defaultParallelism();
+    private DirectoryScanner.LinkPolicy linkPolicy = DirectoryScanner.LinkPolicy.ALWAYS;
+
+    public CombinerCli(PrintStream err) {
+        this.err = err;
+    }
+
+    public static int run(String[] args) {
+        return new CombinerCli(System.err).execute(args);
+    }
+
+    // Parse arguments, scan, filter and combine; returns the process exit code
+    public int execute(String[] args) {
+        try {
+            if (!parse(args)) return EXIT_OK;
+        } catch (IllegalArgumentException e) {
+            err.println("Error: " + e.getMessage());
+            err.println();
+            printUsage();
+            return EXIT_ERROR;
+        }
+
+        if (ignorePatterns.isEmpty()) ignorePatterns.addAll(DirectoryScanner.parsePatterns(DirectoryScanner.DEFAULT_EXCLUDES));
+        FileMatcher filter = new FileMatcher(includes, excludes, minSize, maxSize);
+        DirectoryScanner scanner = new DirectoryScanner(threads, linkPolicy, useIgnoreFiles, ignorePatterns, filter);
+        err.println("Scanning " + root.getAbsolutePath() + " ...");
+        FileTreeStore store = scanner.scan(root);
+        int failures = 0;
+        for (String warning : scanner.drainWarnings()) {
+            err.println(warning);
+            failures++;
+        }
+        err.println("Scanned " + scanner.getEntryCount() + " entries in " + scanner.getElapsedMillis() + " ms");
+        if (scanner.getPrunedEntries() > 0) {
+            err.printf("Pruned %d ignored entries (%d folders not listed, %.1f MB of files)%n", scanner.getPrunedEntries(),
+                    scanner.getPrunedFolders(), scanner.getPrunedBytes() / (1024.0 * 1024.0));
+        }
+        if (scanner.getFilteredFiles() > 0) {
+            err.println("Filtered out " + scanner.getFilteredFiles() + " files (" + filter + ")");
+        }
+
+        List<FileEntry> files = collectFiles(store);
+        if (files.isEmpty()) {
+            err.println("No files match; nothing written.");
+            return failures > 0 ? EXIT_READ_FAILURES : EXIT_OK;
+        }
+
+        FileCombiner combiner = new FileCombiner(!fullPaths, threads, binaryPolicy, new ContentSniffer(), incremental, chunkLimit, codec, dedupe);
+        ProgressListener progress = new ProgressListener(files.size());
+        try {
+            combiner.combine(files, output, progress);
+        } catch (IOException e) {
+            err.println("Error writing " + output + ": " + e.getMessage());
+            return EXIT_ERROR;
+        }
+        failures += (int) combiner.getFilesFailed();
+        if (combiner.getFilesBinary() > 0) {
+            err.println(combiner.getFilesBinary() + " binary/generated files not included (" + binaryPolicy.name().toLowerCase(Locale.ROOT) + ")");
+        }
+        err.printf("Combined %d files (%.1f MB) into %s in %d ms%n", combiner.getFilesWritten(),
+                combiner.getBytesWritten() / (1024.0 * 1024.0), combiner.outputFile(output).getAbsolutePath(),
+                combiner.getElapsedMillis());
+        if (combiner.isCompressed()) {
+            err.printf("Compressed to %.1f MB (%.0f%%); %.1f MB/s raw, %.1f MB/s compressed%n",
+                    combiner.getCompressedBytes() / (1024.0 * 1024.0),
+                    100.0 * combiner.getCompressedBytes() / Math.max(1, combiner.getBytesWritten()),
+                    combiner.getMegabytesPerSecond(), combiner.getCompressedMegabytesPerSecond());
+        }
+        if (!combiner.getChunkFiles().isEmpty()) {
+            err.println("Split into " + combiner.getChunkFiles().size() + " chunks of at most " + chunkLimit
+                    + " (index: " + ChunkedOutput.indexFile(output.toPath()) + ")");
+        }
+        if (combiner.getFilesDeduplicated() > 0) {
+            err.printf("Deduplicated %d identical files (%.1f MB not repeated; %d candidates hashed in %d ms)%n",
+                    combiner.getFilesDeduplicated(), combiner.getBytesDeduplicated() / (1024.0 * 1024.0),
+                    combiner.getDuplicateFinder().getCandidates(), combiner.getDuplicateFinder().getElapsedMillis());
+        }
+        if (combiner.getFilesReused() > 0) {
+            err.printf("Reused %d unchanged files (%.1f MB) from the previous output%n", combiner.getFilesReused(),
+                    combiner.getBytesReused() / (1024.0 * 1024.0));
+        }
+        if (failures > 0) {
+            err.println(failures + " file(s) or folder(s) could not be read");
+            return EXIT_READ_FAILURES;
+        }
+        return EXIT_OK;
+    }
+
+    // Returns false when only help was requested
+    private boolean parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-h":
+                case "--help":
+                    printUsage();
+                    return false;
+                case "-r":
+                case "--root":
+                    root = new File(value(args, ++i, arg));
+                    break;
+                case "-o":
+                case "--output":
+                    output = new File(value(args, ++i, arg));
+                    break;
+                case "-i":
+                case "--include":
+                    includes.add(value(args, ++i, arg));
+                    break;
+                case "-x":
+                case "--exclude":
+                    excludes.add(value(args, ++i, arg));
+                    break;
+                case "-e":
+                case "--ext":
+                    for (String ext : DirectoryScanner.parsePatterns(value(args, ++i, arg))) {
+                        includes.add("*." + (ext.startsWith(".") ? ext.substring(1) : ext));
+                    }
+                    break;
+                case "--min-size":
+                    minSize = FileMatcher.parseSize(value(args, ++i, arg));
+                    break;
+                case "--max-size":
+                    maxSize = FileMatcher.parseSize(value(args, ++i, arg));
+                    break;
+                case "--ignore":
+                    ignorePatterns.addAll(DirectoryScanner.parsePatterns(value(args, ++i, arg)));
+                    break;
+                case "--no-ignore-files":
+                    useIgnoreFiles = false;
+                    break;
+                case "--binary":
+                    binaryPolicy = parseBinaryPolicy(value(args, ++i, arg));
+                    break;
+                case "--full-paths":
+                    fullPaths = true;
+                    break;
+                case "--split":
+                    chunkLimit = ChunkedOutput.Limit.parse(value(args, ++i, arg));
+                    break;
+                case "--compress":
+                    codec = parseCodec(value(args, ++i, arg));
+                    break;
+                case "--dedupe":
+                    dedupe = true;
+                    break;
+                case "--incremental":
+                    incremental = true;
+                    break;
+                case "--threads":
+                    try {
+                        threads = Math.max(1, Integer.parseInt(value(args, ++i, arg)));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("--threads needs a number");
+                    }
+                    break;
+                case "--links":
+                    linkPolicy = parseLinkPolicy(value(args, ++i, arg));
+                    break;
+                case "-v":
+                case "--verbose":
+                    verbose = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (root == null) throw new IllegalArgumentException("--root is required");
+        if (output == null) throw new IllegalArgumentException("--output is required");
+        if (!root.isDirectory()) throw new IllegalArgumentException("Not a folder: " + root);
+        return true;
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) throw new IllegalArgumentException(option + " needs a value");
+        return args[i];
+    }
+
+    private static FileCombiner.BinaryPolicy parseBinaryPolicy(String value) {
+        switch (value) {
+            case "skip":
+                return FileCombiner.BinaryPolicy.SKIP;
+            case "summarize":
+                return FileCombiner.BinaryPolicy.SUMMARIZE;
+            case "include":
+                return FileCombiner.BinaryPolicy.INCLUDE;
+            default:
+                throw new IllegalArgumentException("--binary must be skip, summarize or include");
+        }
+    }
+
+    private static CompressedChannel.Codec parseCodec(String value) {
+        switch (value) {
+            case "none":
+                return CompressedChannel.Codec.NONE;
+            case "gzip":
+                return CompressedChannel.Codec.GZIP;
+            case "parallel":
+                return CompressedChannel.Codec.PARALLEL_GZIP;
+            default:
+                throw new IllegalArgumentException("--compress must be none, gzip or parallel");
+        }
+    }
+
+    private static DirectoryScanner.LinkPolicy parseLinkPolicy(String value) {
+        switch (value) {
+            case "never":
+                return DirectoryScanner.LinkPolicy.NEVER;
+            case "within-root":
+                return DirectoryScanner.LinkPolicy.WITHIN_ROOT;
+            case "always":
+                return DirectoryScanner.LinkPolicy.ALWAYS;
+            default:
+                throw new IllegalArgumentException("--links must be never, within-root or always");
+        }
+    }
+
+    // Files of the scanned tree in tree order (the scanner already applied the filter)
+    private List<FileEntry> collectFiles(FileTreeStore store) {
+        List<FileEntry> out = new ArrayList<>();
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int id = stack[--top];
+            if (store.isFile(id)) out.add(store.getEntry(id));
+            int count = store.getChildCount(id);
+            // push in reverse so children are visited in sorted order
+            for (int i = count - 1; i >= 0; i--) {
+                if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+                stack[top++] = store.getChild(id, i);
+            }
+        }
+        return out;
+    }
+
+    private void printUsage() {
+        err.println("Usage: java -jar DirectoryBrowser.jar --root <folder> --output <file> [options]");
+        err.println("       (no arguments starts the graphical browser)");
+        err.println();
+        err.println("  -r, --root <folder>     folder to scan");
+        err.println("  -o, --output <file>     combined output file (replaced)");
+        err.println("  -i, --include <glob>    only combine matching files (repeatable)");
+        err.println("  -x, --exclude <glob>    skip matching files (repeatable)");
+        err.println("                          a glob without '/' matches the file name,");
+        err.println("                          otherwise the path relative to the root");
+        err.println("  -e, --ext <list>        only combine these extensions, e.g. java,md (repeatable)");
+        err.println("      --min-size <size>   skip smaller files (bytes or K/M/G)");
+        err.println("      --max-size <size>   skip larger files (bytes or K/M/G)");
+        err.println("      --ignore <list>     .gitignore-style patterns never scanned (comma-separated,");
+        err.println("                          repeatable, default: " + DirectoryScanner.DEFAULT_EXCLUDES + ")");
+        err.println("      --no-ignore-files   do not read .gitignore/.ignore files");
+        err.println("      --binary <mode>     skip | summarize | include binary and generated files");
+        err.println("                          (default: summarize, one line instead of the content)");
+        err.println("      --full-paths        write absolute paths in headers (default: file names)");
+        err.println("      --split <limit>     write numbered chunks of at most <limit>: bytes (8M),");
+        err.println("                          '20000 lines' or '100K tokens'; see <file>-index.txt");
+        err.println("      --compress <codec>  none | gzip | parallel (gzip on all threads); adds .gz");
+        err.println("      --dedupe            write identical files once; later copies point to the first");
+        err.println("      --incremental       copy unchanged files from the previous output");
+        err.println("                          (uses <file>.manifest, written next to the output)");
+        err.println("      --threads <n>       scan and reader threads (default: " + DirectoryScanner.defaultParallelism() + ")");
+        err.println("      --links <policy>    never | within-root | always (default: always)");
+        err.println("  -v, --verbose           print every file written");
+        err.println("  -h, --help              show this help");
+    }
+
+    // Prints failures always, each file in verbose mode, otherwise a progress line about once per second
+    private final class ProgressListener implements FileCombiner.Listener {
+        private final int total;
+        private int done;
+        private long lastReport = System.nanoTime();
+
+        ProgressListener(int total) {
+            this.total = total;
+        }
+
+        @Override
+        public void fileStarted(FileEntry entry) {
+            done++;
+            if (verbose) {
+                err.println("Writing: " + entry.getPath());
+                return;
+            }
+            long now = System.nanoTime();
+            if (now - lastReport >= PROGRESS_INTERVAL_NANOS) {
+                lastReport = now;
+                err.println("Progress: " + done + "/" + total + " files");
+            }
+        }
+
+        @Override
+        public void fileSkipped(FileEntry entry) {
+            err.println("Skipping (not a readable file): " + entry.getPath());
+        }
+
+        @Override
+        public void readFailed(FileEntry entry, String reason) {
+            err.println("Failed to read: " + entry.getPath() + " -> " + reason);
+        }
+
+        @Override
+        public void binarySkipped(FileEntry entry, String kind) {
+            if (verbose) err.println("Not included (" + kind + "): " + entry.getPath());
+        }
+    }
+}
@@ -0,0 +1,180 @@
+// File: CompressedChannel.java
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * CompressedChannel - gzip-compresses everything written to it into a file, as it is written.
+ * GZIP deflates on the calling thread; PARALLEL_GZIP deflates 1 MB blocks on worker threads.
+ */
+public final class CompressedChannel implements WritableByteChannel {
+    // Output codec; both produce standard .gz files
+    public enum Codec {
+        NONE("No compression"),
+        GZIP("Compress: gzip"),
+        PARALLEL_GZIP("Compress: gzip, fast parallel"); // fastest level per block: a little ratio for speed
+
+        private final String label;
+
+        Codec(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public static final String SUFFIX = ".gz";
+
+    private static final int BLOCK_SIZE = 1024 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final FileChannel file;
+    private final ExecutorService workers;   // null: deflate on the calling thread
+    private final int maxPending;            // blocks in flight, written in order; bounds memory
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private final Deflater deflater;          // sequential mode only
+    private final byte[] deflated;            // sequential mode output buffer
+    private final CRC32 crc = new CRC32();    // of the raw bytes, on the calling thread
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int fill;
+    private byte[] dictionary;               // last 32 KB of the previous block, primes the next (parallel mode)
+    private long rawBytes;
+    private long compressedBytes;
+    private boolean open = true;
+
+    // workers null compresses sequentially; the file is closed with the channel
+    public CompressedChannel(FileChannel file, ExecutorService workers, int workerCount) throws IOException {
+        this.file = file;
+        this.workers = workers;
+        this.maxPending = Math.max(2, workerCount * 2);
+        this.deflater = workers == null ? new Deflater(Deflater.DEFAULT_COMPRESSION, true) : null;
+        this.deflated = workers == null ? new byte[64 * 1024] : null;
+        writeFully(ByteBuffer.wrap(GZIP_HEADER));
+    }
+
+    // Uncompressed bytes accepted so far
+    public long getRawBytes() {
+        return rawBytes;
+    }
+
+    // Compressed bytes written to the file so far (final after close)
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (!open) throw new ClosedChannelException();
+        int n = src.remaining();
+        while (src.hasRemaining()) {
+            int k = Math.min(src.remaining(), BLOCK_SIZE - fill);
+            src.get(block, fill, k);
+            fill += k;
+            if (fill == BLOCK_SIZE) flushBlock(false);
+        }
+        rawBytes += n;
+        return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    // Compress the rest, then write the gzip trailer (CRC32 and size mod 2^32) and close the file
+    @Override
+    public void close() throws IOException {
+        if (!open) return;
+        open = false;
+        try {
+            flushBlock(true);
+            while (!pending.isEmpty()) writeNext();
+            ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            trailer.putInt((int) crc.getValue()).putInt((int) rawBytes).flip();
+            writeFully(trailer);
+        } finally {
+            for (Future<byte[]> f : pending) f.cancel(true);
+            if (deflater != null) deflater.end();
+            file.close();
+        }
+    }
+
+    private void flushBlock(boolean last) throws IOException {
+        crc.update(block, 0, fill);
+        if (workers == null) {
+            deflater.setInput(block, 0, fill);
+            if (last) deflater.finish();
+            while (last ? !deflater.finished() : !deflater.needsInput()) {
+                int n = deflater.deflate(deflated);
+                writeFully(ByteBuffer.wrap(deflated, 0, n));
+            }
+            fill = 0;
+            return;
+        }
+        byte[] data = block;
+        int length = fill;
+        byte[] dict = dictionary;
+        pending.add(workers.submit(() -> deflateBlock(data, length, dict, last)));
+        if (!last) {
+            // full blocks only, so the tail is always DICTIONARY_SIZE long
+            dictionary = Arrays.copyOfRange(data, length - DICTIONARY_SIZE, length);
+            block = new byte[BLOCK_SIZE];
+        }
+        fill = 0;
+        while (pending.size() > maxPending) writeNext();
+    }
+
+    // Raw deflate of one block; all but the last end on a byte boundary (sync flush) so they can be appended
+    private static byte[] deflateBlock(byte[] data, int length, byte[] dictionary, boolean last) {
+        Deflater d = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            if (dictionary != null) d.setDictionary(dictionary);
+            d.setInput(data, 0, length);
+            if (last) d.finish();
+            byte[] out = new byte[length / 2 + 1024];
+            int size = 0;
+            while (true) {
+                if (size == out.length) out = Arrays.copyOf(out, out.length * 2);
+                int n = d.deflate(out, size, out.length - size, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                size += n;
+                if (last ? d.finished() : size < out.length) break;
+            }
+            return Arrays.copyOf(out, size);
+        } finally {
+            d.end();
+        }
+    }
+
+    private void writeNext() throws IOException {
+        try {
+            writeFully(ByteBuffer.wrap(pending.poll().get()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Compression interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Compression failed", e.getCause());
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        compressedBytes += buffer.remaining();
+        while (buffer.hasRemaining()) file.write(buffer);
+    }
+}
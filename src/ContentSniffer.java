@@ -0,0 +1,183 @@
+// File: ContentSniffer.java
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ContentSniffer - decides from the first few KB whether a file is text worth combining.
+ * Binary files are recognised by magic numbers, NUL bytes or a high share of invalid UTF-8 and
+ * control bytes; generated text by a "Code generated ... DO NOT EDIT" / "@generated" marker near
+ * the top or a first line longer than the sniffed window (minified bundles).
+ * Verdicts are cached per path and reused while the file's size and modification time on disk are unchanged.
+ * Safe for concurrent use by the combine readers.
+ */
+public class ContentSniffer {
+    // Bytes looked at per file
+    public static final int SNIFF_BYTES = 8 * 1024;
+
+    // Share of invalid UTF-8 / control bytes above which content counts as binary
+    private static final double MAX_NON_TEXT_RATIO = 0.10;
+
+    private static final String TEXT = ""; // cached verdict for plain text
+
+    private static final Object[][] MAGIC = {
+            {new byte[]{(byte) 0x89, 'P', 'N', 'G'}, "PNG image"},
+            {new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}, "JPEG image"},
+            {"GIF8".getBytes(StandardCharsets.US_ASCII), "GIF image"},
+            {new byte[]{0, 0, 1, 0}, "icon"},
+            {"II*\0".getBytes(StandardCharsets.US_ASCII), "TIFF image"},
+            {"MM\0*".getBytes(StandardCharsets.US_ASCII), "TIFF image"},
+            {"wOFF".getBytes(StandardCharsets.US_ASCII), "web font"},
+            {"wOF2".getBytes(StandardCharsets.US_ASCII), "web font"},
+            {"%PDF".getBytes(StandardCharsets.US_ASCII), "PDF document"},
+            {new byte[]{'P', 'K', 3, 4}, "ZIP/JAR archive"},
+            {new byte[]{'P', 'K', 5, 6}, "ZIP/JAR archive"},
+            {new byte[]{'R', 'a', 'r', '!', 0x1A, 0x07}, "RAR archive"},
+            {new byte[]{'7', 'z', (byte) 0xBC, (byte) 0xAF, 0x27, 0x1C}, "7z archive"},
+            {new byte[]{0x1F, (byte) 0x8B}, "gzip archive"},
+            {"BZh".getBytes(StandardCharsets.US_ASCII), "bzip2 archive"},
+            {new byte[]{(byte) 0xFD, '7', 'z', 'X', 'Z', 0}, "xz archive"},
+            {new byte[]{0x28, (byte) 0xB5, 0x2F, (byte) 0xFD}, "zstd archive"},
+            {new byte[]{0x7F, 'E', 'L', 'F'}, "ELF executable"},
+            {new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE}, "Java class file"},
+            {"MZ".getBytes(StandardCharsets.US_ASCII), "Windows executable"},
+            {"SQLite format 3\0".getBytes(StandardCharsets.US_ASCII), "SQLite database"},
+            {"ID3".getBytes(StandardCharsets.US_ASCII), "MP3 audio"},
+            {"OggS".getBytes(StandardCharsets.US_ASCII), "Ogg media"},
+            {"RIFF".getBytes(StandardCharsets.US_ASCII), "RIFF media"},
+    };
+
+    private final Map<Path, Verdict> cache = new ConcurrentHashMap<>();
+    private final LongAdder sniffed = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+
+    // Description of why the file should not be combined as text, or null for text; reads the head itself.
+    // now: the file's attributes on disk, read before its content (null: not cached)
+    public String detect(FileEntry entry, BasicFileAttributes now) throws IOException {
+        String cached = cached(entry, now);
+        if (cached != null) return cached.isEmpty() ? null : cached;
+        ByteBuffer head = ByteBuffer.allocate(SNIFF_BYTES);
+        try (FileChannel ch = FileChannel.open(entry.getPath(), StandardOpenOption.READ)) {
+            while (head.hasRemaining() && ch.read(head) > 0) {
+                // fill the window
+            }
+        }
+        return store(entry, now, classify(head.array(), head.position()));
+    }
+
+    // Same, for content that is already in memory (only the first SNIFF_BYTES are looked at)
+    public String detect(FileEntry entry, BasicFileAttributes now, byte[] content) {
+        String cached = cached(entry, now);
+        if (cached != null) return cached.isEmpty() ? null : cached;
+        return store(entry, now, classify(content, Math.min(content.length, SNIFF_BYTES)));
+    }
+
+    public long getSniffedCount() {
+        return sniffed.sum();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    private String cached(FileEntry entry, BasicFileAttributes now) {
+        if (now == null) return null;
+        Verdict v = cache.get(entry.getPath());
+        if (v == null || v.size != now.size() || v.lastModified != now.lastModifiedTime().toMillis()) return null;
+        cacheHits.increment();
+        return v.kind;
+    }
+
+    private String store(FileEntry entry, BasicFileAttributes now, String kind) {
+        sniffed.increment();
+        if (now != null) {
+            cache.put(entry.getPath(), new Verdict(now.size(), now.lastModifiedTime().toMillis(), kind == null ? TEXT : kind));
+        }
+        return kind;
+    }
+
+    // Classify the first len bytes; null means plain text
+    public static String classify(byte[] b, int len) {
+        if (len == 0) return null;
+        for (Object[] m : MAGIC) {
+            if (startsWith(b, len, (byte[]) m[0])) return (String) m[1];
+        }
+        if (len >= 12 && b[4] == 'f' && b[5] == 't' && b[6] == 'y' && b[7] == 'p') return "MP4/MOV media";
+
+        int nonText = 0;
+        int i = 0;
+        while (i < len) {
+            int c = b[i] & 0xFF;
+            if (c == 0) return "binary data";
+            if (c < 0x80) {
+                if (c < 0x20 && c != '\t' && c != '\n' && c != '\r' && c != '\f' && c != 0x1B && c != '\b') nonText++;
+                i++;
+                continue;
+            }
+            int extra = c >= 0xF0 && c <= 0xF4 ? 3 : c >= 0xE0 ? 2 : c >= 0xC2 && c < 0xE0 ? 1 : -1;
+            if (extra < 0) {
+                nonText++;
+                i++;
+                continue;
+            }
+            if (i + extra >= len) break; // sequence cut by the window
+            boolean valid = true;
+            for (int k = 1; k <= extra; k++) {
+                if ((b[i + k] & 0xC0) != 0x80) valid = false;
+            }
+            if (valid) {
+                i += extra + 1;
+            } else {
+                nonText++;
+                i++;
+            }
+        }
+        if (nonText > len * MAX_NON_TEXT_RATIO) return "binary data";
+        return generatedKind(b, len);
+    }
+
+    // Generated text: marker in the first lines, or no line break in a full window (minified)
+    private static String generatedKind(byte[] b, int len) {
+        int lines = 0;
+        int end = 0;
+        while (end < len && lines < 5) {
+            if (b[end] == '\n') lines++;
+            end++;
+        }
+        String top = new String(b, 0, end, StandardCharsets.UTF_8);
+        if (top.contains("@generated") || (top.contains("Code generated") && top.contains("DO NOT EDIT"))) {
+            return "generated source";
+        }
+        if (lines == 0 && len == SNIFF_BYTES) return "minified/generated text";
+        return null;
+    }
+
+    private static boolean startsWith(byte[] b, int len, byte[] prefix) {
+        if (len < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (b[i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    // Cached result for one path
+    private static final class Verdict {
+        final long size;
+        final long lastModified;
+        final String kind;
+
+        Verdict(long size, long lastModified, String kind) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.kind = kind;
+        }
+    }
+}
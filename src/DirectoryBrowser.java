@@ -1,11 +1,19 @@
 // File: DirectoryBrowser.java
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.event.TreeWillExpandListener;
 import javax.swing.filechooser.FileSystemView;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.ExpandVetoException;
+import javax.swing.tree.TreePath;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
@@ -21,16 +29,58 @@ public class DirectoryBrowser {
     private static JTextField pathField;                 // shows selected folder path (left)
     private static JButton selectButton;                 // "Select Folder" button (right)
     private static JCheckBoxTree tree;                   // checkbox-enabled tree
-    private static DefaultTreeModel treeModel;           // tree model
+    private static FileTreeModel treeModel;              // tree model (view over the compact FileTreeStore)
     private static JButton writeButton;                  // "Write to File" button (right panel)
     private static JTextArea statusArea;                 // status log area (right panel)
+    private static StatusLog statusLog;                  // batched, bounded writer of statusArea
+    private static JCheckBox logFileCheckBox;            // Checkbox for writing per-file detail to <output>.log
+    private static JLabel filesLabel;                    // live "files selected" figure under the log
     private static JButton refreshButton;                // Refresh button
+    private static JButton cancelButton;                 // stops the running scan and combine
     private static JCheckBox fileNameOnlyCheckBox;       // Checkbox for file name only/full path
+    private static JCheckBox lazyLoadCheckBox;           // Checkbox for on-expand (lazy) folder loading
+    private static JSpinner threadsSpinner;              // number of parallel scanner / combine reader threads
+    private static JComboBox<DirectoryScanner.LinkPolicy> linkPolicyBox; // which symlinked folders to follow
+    private static JCheckBox ignoreFilesCheckBox;        // Checkbox for honoring .gitignore/.ignore files
+    private static JTextField excludeField;              // extra .gitignore-style patterns pruned from the scan
+    private static JTextField filterField;               // file filter: globs, !excludes, size limits
+    private static JComboBox<FileCombiner.BinaryPolicy> binaryPolicyBox; // skip/summarize/include binary files
+    private static JCheckBox liveCheckBox;               // Checkbox for live refresh (WatchService)
+    private static JCheckBox incrementalCheckBox;        // Checkbox for reusing unchanged segments of the last output
+    private static JCheckBox dedupeCheckBox;             // Checkbox for writing identical files once
+    private static JTextField splitField;                // Chunk limit for split output (empty = one file)
+    private static JComboBox<CompressedChannel.Codec> codecBox; // none/gzip/parallel gzip output
+    private static LiveRefresher liveRefresher = null;   // watches the tree on screen while live mode is on
+    private static boolean scanInProgress = false;       // a scan reads the store: live refresh waits for it
+    private static int scanGeneration = 0;               // bumped by every scan; results of older ones are dropped
+    private static DirectoryScanner runningScan = null;  // background scan in flight, if any
+    private static FileCombiner runningCombine = null;   // combine in flight, if any
+    private static TreeFiller treeFiller = null;         // grows the tree on screen during a fresh scan
+    private static JTextField searchField;               // quick filter over the loaded tree
+    private static JLabel searchLabel;                   // number of quick-filter matches
+    private static JButton checkMatchesButton;           // checks every quick-filter match at once
+    private static javax.swing.Timer searchTimer;        // runs the quick filter once typing pauses
+    private static NameIndex nameIndex = null;           // names of the loaded tree for the quick filter
+    private static FileTreeStore indexingStore = null;   // store whose name index is being built
+    private static FileTreeModel followedModel = null;   // full model whose changes re-run the quick filter
+    private static int[] searchMatches = new int[0];     // matches of the last quick filter run
+    private static final int MAX_FILTER_EXPAND = 500;    // folders opened to show quick-filter matches
+    private static final ContentSniffer sniffer = new ContentSniffer(); // binary verdicts, cached across combines
     private static final FileSystemView fsv = FileSystemView.getFileSystemView(); // system icons/names
 
     // keep track of the currently selected root folder to use as default save location
     private static File selectedRootDir = null;
 
+    // scanner settings (link policy, root) of the loaded tree, reused for lazy listing and write-time resolution
+    private static DirectoryScanner activeScanner = null;
+
+    // Saved scans per root folder, and the scanner settings the tree on screen was built with
+    private static final ScanSnapshot snapshots = new ScanSnapshot(ScanSnapshot.defaultDirectory());
+    private static String loadedSettingsKey = null;
+
+    // lazy directory nodes whose children are currently being listed in the background
+    private static final Set<Integer> loadingNodes = new HashSet<>();
+
     // Colors
     private static final Color ACCENT_COLOR = new Color(255, 87, 34);
     private static final Color ACCENT_DARK = new Color(216, 67, 21);
@@ -105,6 +155,13 @@ public class DirectoryBrowser {
 
         frame = new JFrame("Directory Browser - Combine Selected Files");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                if (liveRefresher != null) liveRefresher.stop();
+                saveSnapshot(true); // keep the check state for the next start
+            }
+        });
         frame.getContentPane().setBackground(new Color(250, 250, 250));
         frame.setLayout(new BorderLayout(0, 0));
 
@@ -143,17 +200,83 @@ public class DirectoryBrowser {
         frame.add(topPanel, BorderLayout.NORTH);
 
         // Initial tree placeholder
-        DefaultMutableTreeNode root = new DefaultMutableTreeNode("No folder selected");
-        treeModel = new DefaultTreeModel(root);
-        tree = new JCheckBoxTree(root);
+        treeModel = new FileTreeModel("No folder selected");
+        tree = new JCheckBoxTree(treeModel);
         tree.setRowHeight(36);
         tree.setBackground(Color.WHITE);
+        tree.addTreeWillExpandListener(new TreeWillExpandListener() {
+            @Override
+            public void treeWillExpand(TreeExpansionEvent event) throws ExpandVetoException {
+                Object last = event.getPath().getLastPathComponent();
+                if (last instanceof Integer) {
+                    loadLazyChildren((Integer) last);
+                }
+            }
+
+            @Override
+            public void treeWillCollapse(TreeExpansionEvent event) throws ExpandVetoException {
+            }
+        });
+
+        // Live refresh and the quick filter follow the model on screen (new folder, rescan, lazy reload)
+        tree.addPropertyChangeListener(JTree.TREE_MODEL_PROPERTY, e -> {
+            restartLiveRefresh();
+            followTreeModel();
+        });
 
         JScrollPane treeScroll = new JScrollPane(tree);
         treeScroll.setBorder(BorderFactory.createEmptyBorder());
         treeScroll.getViewport().setBackground(Color.WHITE);
         treeScroll.setBackground(Color.WHITE);
 
+        // Quick filter above the tree: narrows the tree to matching names while typing
+        JPanel searchPanel = new JPanel(new BorderLayout(8, 0));
+        searchPanel.setBackground(Color.WHITE);
+        searchPanel.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+        JLabel findLabel = new JLabel("Find");
+        findLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        findLabel.setForeground(new Color(117, 117, 117));
+        searchField = new JTextField();
+        searchField.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        searchField.setToolTipText("<html>Show only entries whose name contains the text, e.g. <b>readme</b><br>" +
+                "<b>*.java</b>, <b>test?.txt</b>: glob for the whole name · <b>/^v\\d+/</b>: regular expression · case is ignored</html>");
+        searchTimer = new javax.swing.Timer(150, e -> runQuickFilter());
+        searchTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { searchTimer.restart(); }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) { searchTimer.restart(); }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) { searchTimer.restart(); }
+        });
+        searchField.addActionListener(e -> {
+            searchTimer.stop();
+            runQuickFilter();
+        });
+        searchLabel = new JLabel();
+        searchLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        searchLabel.setForeground(new Color(117, 117, 117));
+        checkMatchesButton = createMaterialButton("Check matches", new Color(66, 66, 66), Color.WHITE, new Color(97, 97, 97));
+        checkMatchesButton.setFont(new Font("Segoe UI Semibold", Font.PLAIN, 12));
+        checkMatchesButton.setPreferredSize(new Dimension(130, 30));
+        checkMatchesButton.setEnabled(false);
+        checkMatchesButton.setToolTipText("Check every match (a folder with everything under it)");
+        checkMatchesButton.addActionListener(e -> onCheckMatches());
+        JPanel searchResultPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 0));
+        searchResultPanel.setBackground(Color.WHITE);
+        searchResultPanel.add(searchLabel);
+        searchResultPanel.add(checkMatchesButton);
+        searchPanel.add(findLabel, BorderLayout.WEST);
+        searchPanel.add(searchField, BorderLayout.CENTER);
+        searchPanel.add(searchResultPanel, BorderLayout.EAST);
+        JPanel leftPanel = new JPanel(new BorderLayout());
+        leftPanel.setBackground(Color.WHITE);
+        leftPanel.add(searchPanel, BorderLayout.NORTH);
+        leftPanel.add(treeScroll, BorderLayout.CENTER);
+
         // Right panel
         JPanel rightPanel = new JPanel(new BorderLayout(16, 16));
         rightPanel.setBackground(new Color(250, 250, 250));
@@ -174,9 +297,51 @@ public class DirectoryBrowser {
                 (fileNameOnlyCheckBox.isSelected() ? "File name only" : "Full path")));
         checkboxPanel.add(fileNameOnlyCheckBox);
 
-        // Right side: Refresh button
-        JPanel refreshPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        // Lazy mode: only list a folder's children when it is expanded
+        lazyLoadCheckBox = createMaterialCheckBox("Load folders on expand (lazy)");
+        lazyLoadCheckBox.setSelected(false);
+        lazyLoadCheckBox.setBorder(BorderFactory.createEmptyBorder(0, 12, 0, 0));
+        lazyLoadCheckBox.addActionListener(e -> appendStatus("✓ Folder loading: " +
+                (lazyLoadCheckBox.isSelected() ? "On expand (lazy)" : "Full scan")));
+        checkboxPanel.add(lazyLoadCheckBox);
+
+        // Pruning: .gitignore/.ignore files and extra exclude patterns, applied before folders are listed
+        ignoreFilesCheckBox = createMaterialCheckBox("Honor .gitignore");
+        ignoreFilesCheckBox.setSelected(true);
+        ignoreFilesCheckBox.setBorder(BorderFactory.createEmptyBorder(0, 12, 0, 0));
+        ignoreFilesCheckBox.addActionListener(e -> appendStatus("✓ Ignore files: " +
+                (ignoreFilesCheckBox.isSelected() ? "Honored (applies on refresh)" : "Not used (applies on refresh)")));
+        checkboxPanel.add(ignoreFilesCheckBox);
+        excludeField = new JTextField(DirectoryScanner.DEFAULT_EXCLUDES, 12);
+        excludeField.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        excludeField.setToolTipText("Comma-separated .gitignore-style patterns that are never scanned (e.g. .git/, target/, node_modules/)");
+        checkboxPanel.add(Box.createHorizontalStrut(8));
+        checkboxPanel.add(excludeField);
+
+        // Right side: scan threads and Refresh button
+        JPanel refreshPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 0));
         refreshPanel.setBackground(new Color(250, 250, 250));
+        JLabel threadsLabel = new JLabel("Threads");
+        threadsLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        threadsLabel.setForeground(new Color(117, 117, 117));
+        threadsSpinner = new JSpinner(new SpinnerNumberModel(DirectoryScanner.defaultParallelism(), 1, 256, 1));
+        threadsSpinner.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        threadsSpinner.setToolTipText("Folders listed concurrently during a full scan and files read ahead while combining (1 = sequential)");
+        refreshPanel.add(threadsLabel);
+        refreshPanel.add(threadsSpinner);
+        linkPolicyBox = new JComboBox<>(DirectoryScanner.LinkPolicy.values());
+        linkPolicyBox.setSelectedItem(DirectoryScanner.LinkPolicy.ALWAYS);
+        linkPolicyBox.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        linkPolicyBox.setToolTipText("Symbolic links to folders that are not followed are shown as links");
+        refreshPanel.add(linkPolicyBox);
+        liveCheckBox = createMaterialCheckBox("Live");
+        liveCheckBox.setSelected(false);
+        liveCheckBox.setToolTipText("Watch the loaded folders and apply changes to the tree as they happen");
+        liveCheckBox.addActionListener(e -> {
+            restartLiveRefresh();
+            if (!liveCheckBox.isSelected()) appendStatus("✓ Live refresh off");
+        });
+        refreshPanel.add(liveCheckBox);
         refreshButton = createMaterialButton("Refresh", new Color(66, 66, 66), Color.WHITE, new Color(97, 97, 97));
         refreshButton.setFont(new Font("Segoe UI Semibold", Font.PLAIN, 14));
         refreshButton.setPreferredSize(new Dimension(120, 36));
@@ -187,6 +352,52 @@ public class DirectoryBrowser {
         controlPanel.add(checkboxPanel, BorderLayout.WEST);
         controlPanel.add(refreshPanel, BorderLayout.EAST);
 
+        // Bottom row: file filter, used by the next scan and immediately by Write to File
+        JPanel filterPanel = new JPanel(new BorderLayout(8, 0));
+        filterPanel.setBackground(new Color(250, 250, 250));
+        filterPanel.setBorder(BorderFactory.createEmptyBorder(8, 0, 0, 0));
+        JLabel filterLabel = new JLabel("Filter");
+        filterLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        filterLabel.setForeground(new Color(117, 117, 117));
+        filterField = new JTextField();
+        filterField.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        filterField.setToolTipText("<html>Files to combine, e.g. <b>*.java, *.md, !**/test/**, &lt;1M</b><br>" +
+                "Globs include, !glob excludes, &lt;size / &gt;size limit the file size (K, M, G)</html>");
+        filterField.addActionListener(e -> applyFileFilter());
+        filterPanel.add(filterLabel, BorderLayout.WEST);
+        filterPanel.add(filterField, BorderLayout.CENTER);
+        binaryPolicyBox = new JComboBox<>(FileCombiner.BinaryPolicy.values());
+        binaryPolicyBox.setSelectedItem(FileCombiner.BinaryPolicy.SUMMARIZE);
+        binaryPolicyBox.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        binaryPolicyBox.setToolTipText("Images, archives, executables and generated/minified files are detected from their first bytes");
+        incrementalCheckBox = createMaterialCheckBox("Incremental");
+        incrementalCheckBox.setSelected(false);
+        incrementalCheckBox.setToolTipText("Copy unchanged files from the previous output (tracked in a .manifest file next to it)");
+        splitField = new JTextField(8);
+        splitField.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        splitField.setToolTipText("<html>Split the output into numbered chunks, e.g. <b>8M</b>, <b>20000 lines</b> or <b>100K tokens</b><br>" +
+                "Empty = one file. Files are only split when they alone exceed the limit</html>");
+        JLabel splitLabel = new JLabel("Split");
+        splitLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        splitLabel.setForeground(new Color(117, 117, 117));
+        JPanel outputOptionsPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 0));
+        outputOptionsPanel.setBackground(new Color(250, 250, 250));
+        outputOptionsPanel.add(splitLabel);
+        outputOptionsPanel.add(splitField);
+        codecBox = new JComboBox<>(CompressedChannel.Codec.values());
+        codecBox.setSelectedItem(CompressedChannel.Codec.NONE);
+        codecBox.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        codecBox.setToolTipText("Write a .gz file directly; the parallel codec compresses 1 MB blocks on all threads");
+        outputOptionsPanel.add(codecBox);
+        outputOptionsPanel.add(incrementalCheckBox);
+        dedupeCheckBox = createMaterialCheckBox("Dedupe");
+        dedupeCheckBox.setSelected(false);
+        dedupeCheckBox.setToolTipText("Write byte-identical files once; later copies get a line pointing to the first");
+        outputOptionsPanel.add(dedupeCheckBox);
+        outputOptionsPanel.add(binaryPolicyBox);
+        filterPanel.add(outputOptionsPanel, BorderLayout.EAST);
+        controlPanel.add(filterPanel, BorderLayout.SOUTH);
+
         // Write button
         writeButton = createMaterialButton("Write to File", BUTTON_ACCENT_BG, BUTTON_ACCENT_FG, BUTTON_ACCENT_HOVER);
         writeButton.setEnabled(false);
@@ -215,16 +426,31 @@ public class DirectoryBrowser {
         statusArea.setForeground(new Color(66, 66, 66));
         statusArea.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
 
+        JLabel progressLabel = new JLabel();
+        progressLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        progressLabel.setForeground(new Color(25, 118, 210));
+        progressLabel.setBorder(BorderFactory.createEmptyBorder(6, 0, 0, 0));
+        statusLog = new StatusLog(statusArea, progressLabel);
+        JPanel logPanel = new JPanel(new BorderLayout());
+        logPanel.setBackground(Color.WHITE);
+        logPanel.add(new JScrollPane(statusArea), BorderLayout.CENTER);
+        logPanel.add(progressLabel, BorderLayout.SOUTH);
+
         statusPanel.add(statusLabel, BorderLayout.NORTH);
-        statusPanel.add(new JScrollPane(statusArea), BorderLayout.CENTER);
+        statusPanel.add(logPanel, BorderLayout.CENTER);
 
         // Statistics panel
         JPanel statsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
         statsPanel.setBackground(Color.WHITE);
-        JLabel filesLabel = new JLabel("Files selected: 0");
+        filesLabel = new JLabel("Files selected: 0");
         filesLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
         filesLabel.setForeground(new Color(117, 117, 117));
         statsPanel.add(filesLabel);
+        logFileCheckBox = createMaterialCheckBox("Log file");
+        logFileCheckBox.setSelected(false);
+        logFileCheckBox.setToolTipText("Write every file of a combine to <output>.log (the log above only shows progress and problems)");
+        statsPanel.add(logFileCheckBox);
+        tree.addCheckChangeListener(e -> updateSelectionStats());
 
         statusPanel.add(statsPanel, BorderLayout.SOUTH);
 
@@ -232,6 +458,13 @@ public class DirectoryBrowser {
         JPanel buttonContainer = new JPanel(new FlowLayout(FlowLayout.CENTER));
         buttonContainer.setBackground(new Color(250, 250, 250));
         buttonContainer.add(writeButton);
+        cancelButton = createMaterialButton("Cancel", new Color(66, 66, 66), Color.WHITE, new Color(97, 97, 97));
+        cancelButton.setFont(new Font("Segoe UI Semibold", Font.PLAIN, 14));
+        cancelButton.setPreferredSize(new Dimension(120, 48));
+        cancelButton.setEnabled(false);
+        cancelButton.setToolTipText("Stop the running scan or combine");
+        cancelButton.addActionListener(e -> onCancel());
+        buttonContainer.add(cancelButton);
 
         // Add components to right panel
         rightPanel.add(controlPanel, BorderLayout.NORTH);
@@ -239,7 +472,7 @@ public class DirectoryBrowser {
         rightPanel.add(statusPanel, BorderLayout.SOUTH);
 
         // Split pane: tree (left) and rightPanel (right)
-        JSplitPane split = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, treeScroll, rightPanel);
+        JSplitPane split = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, leftPanel, rightPanel);
         split.setResizeWeight(1.0);
         split.setBorder(BorderFactory.createEmptyBorder());
         split.setBackground(new Color(250, 250, 250));
@@ -303,39 +536,182 @@ public class DirectoryBrowser {
         loadDirectoryTree(selectedRootDir, true);
     }
 
-    // Build tree model recursively from selected root directory and set it to tree (now async)
+    // Build tree model recursively from selected root directory and set it to tree (now async).
+    // A scan still running is cancelled: the new one replaces it instead of waiting for it
     private static void loadDirectoryTree(File rootFile, boolean isRefresh) {
-        selectButton.setEnabled(false);
+        if (runningScan != null) {
+            runningScan.cancel();
+            runningScan = null;
+            appendStatus("⏹ Previous scan cancelled");
+        }
+        int generation = ++scanGeneration;
         writeButton.setEnabled(false);
-        refreshButton.setEnabled(false);
         String loadingMsg = isRefresh ? "↻ Refreshing directory..." : "✓ Folder loading...";
+        DirectoryScanner scanner = new DirectoryScanner((Integer) threadsSpinner.getValue(),
+                (DirectoryScanner.LinkPolicy) linkPolicyBox.getSelectedItem(),
+                ignoreFilesCheckBox.isSelected(), DirectoryScanner.parsePatterns(excludeField.getText()),
+                applyFileFilter());
+        ScanMonitor monitor = new ScanMonitor(scanner, statusLog::info); // warnings are shown as they happen
+        activeScanner = scanner;
+
+        if (lazyLoadCheckBox.isSelected()) {
+            // Lazy mode: show the root immediately; children are listed when a folder is expanded
+            appendStatus(loadingMsg + " " + rootFile.getAbsolutePath() + " (lazy)");
+            loadingNodes.clear();
+            loadedSettingsKey = null;
+            scanner.setRoot(rootFile.toPath());
+            FileEntry rootEntry = FileEntry.read(rootFile.toPath());
+            treeModel = new FileTreeModel(new FileTreeStore(rootEntry, rootEntry.isDirectory()));
+            tree.setModel(treeModel);
+            tree.setAllChecked(true);
+            tree.expandRow(0);
+            selectButton.setEnabled(true);
+            writeButton.setEnabled(true);
+            refreshButton.setEnabled(true);
+            String doneMsg = isRefresh ? "↻ Directory refreshed: " : "✓ Folder loaded: ";
+            appendStatus(doneMsg + rootFile.getAbsolutePath());
+            return;
+        }
         appendStatus(loadingMsg + " " + rootFile.getAbsolutePath() + " (background)");
+        scanInProgress = true;
+        runningScan = scanner;
+        updateCancelButton();
+        restartLiveRefresh(); // stops it until the scan is done
+
+        // Refresh of the tree on screen (same settings): revalidate it instead of scanning from scratch
+        FileTreeStore current = treeModel.getStore();
+        boolean sameTree = current != null && current.getUnlistedCount() == 0
+                && current.getRootPath().equals(rootFile.toPath().toAbsolutePath())
+                && scanner.getSettingsKey().equals(loadedSettingsKey);
+        if (sameTree) {
+            rescanInBackground(rootFile, scanner, monitor, generation, current, isRefresh);
+            return;
+        }
+
+        // Otherwise show the saved snapshot first (if any), then revalidate it
+        String settingsKey = scanner.getSettingsKey();
+        long openStart = System.nanoTime();
+        new SwingWorker<ScanSnapshot.Loaded, Void>() {
+            @Override
+            protected ScanSnapshot.Loaded doInBackground() throws Exception {
+                return snapshots.load(rootFile.toPath().toAbsolutePath(), settingsKey);
+            }
+
+            @Override
+            protected void done() {
+                if (generation != scanGeneration) return; // a newer scan took over
+                ScanSnapshot.Loaded loaded = null;
+                try {
+                    loaded = get();
+                } catch (Exception ex) {
+                    appendStatus("⚠️ Snapshot not used: " + ex.getMessage());
+                }
+                if (loaded == null) {
+                    rescanInBackground(rootFile, scanner, monitor, generation, null, isRefresh);
+                    return;
+                }
+                treeModel = new FileTreeModel(loaded.store);
+                tree.setModel(treeModel);
+                tree.restoreCheckState(loaded.defaultChecked, loaded.checkFlags);
+                tree.expandRow(0);
+                loadedSettingsKey = settingsKey;
+                writeButton.setEnabled(true);
+                appendStatus(String.format("⚡ Opened snapshot: %,d entries in %,d ms, checking for changes...",
+                        loaded.store.size(), (System.nanoTime() - openStart) / 1_000_000L));
+                rescanInBackground(rootFile, scanner, monitor, generation, loaded.store, isRefresh);
+            }
+        }.execute();
+    }
 
-        new SwingWorker<DefaultMutableTreeNode, Void>() {
+    // Scan (previous == null) or revalidate the tree on screen in the background, then show the result;
+    // the progress line follows the scanner's live counters meanwhile. A fresh scan shows the root at
+    // once and the tree grows while folders are listed (the user can browse and check meanwhile)
+    private static void rescanInBackground(File rootFile, DirectoryScanner scanner, ScanMonitor monitor, int generation,
+                                           FileTreeStore previous, boolean isRefresh) {
+        String task = previous != null ? "🔄 Checking for changes" : "🔍 Scanning";
+        statusLog.startProgress(() -> monitor.statusLine(task));
+        TreeFiller filler;
+        if (previous == null) {
+            FileEntry rootEntry = FileEntry.read(rootFile.toPath());
+            treeModel = new FileTreeModel(new FileTreeStore(rootEntry, rootEntry.isDirectory()));
+            tree.setModel(treeModel);
+            tree.setAllChecked(true);
+            tree.expandRow(0);
+            filler = new TreeFiller(tree, treeModel);
+            treeFiller = filler;
+        } else {
+            filler = null;
+        }
+        FileTreeStore streamed = treeModel.getStore();
+        new SwingWorker<FileTreeStore, Void>() {
             @Override
-            protected DefaultMutableTreeNode doInBackground() throws Exception {
-                Set<String> processing = new HashSet<>();
-                DefaultMutableTreeNode rootNode = createFileTreeNode(rootFile, processing);
-                tree.setCheckedRecursively(rootNode, true);
-                return rootNode;
+            protected FileTreeStore doInBackground() throws Exception {
+                if (filler == null) return scanner.rescan(rootFile, previous);
+                scanner.scanStreaming(rootFile, filler);
+                return streamed;
             }
 
             @Override
             protected void done() {
+                if (filler != null) filler.finish(); // apply the listings still queued
+                if (generation != scanGeneration) return; // cancelled by a newer scan, which owns the tree now
+                scanInProgress = false;
+                runningScan = null;
+                updateCancelButton();
+                statusLog.endProgress();
+                if (scanner.isCancelled()) {
+                    appendStatus("⏹ Scan cancelled: " + rootFile.getAbsolutePath());
+                    selectButton.setEnabled(true);
+                    writeButton.setEnabled(treeModel.getStore() != null);
+                    refreshButton.setEnabled(true);
+                    restartLiveRefresh();
+                    return;
+                }
                 try {
-                    DefaultMutableTreeNode rootNode = get();
-                    treeModel = new DefaultTreeModel(rootNode);
-                    tree.setModel(treeModel);
-                    tree.expandRow(0);
+                    FileTreeStore store = get();
+                    if (previous != null && treeModel.getStore() != previous) return; // another folder was opened
+                    if (previous != null && scanner.getRelistedFolders() == 0 && scanner.getChangedFiles() == 0) {
+                        store = previous; // nothing changed: keep the tree, selection and expansion as they are
+                    } else if (previous != null) {
+                        showRescannedStore(store);
+                    }
+                    loadedSettingsKey = scanner.getSettingsKey();
                     tree.repaint();
                     selectButton.setEnabled(true);
                     writeButton.setEnabled(true);
                     refreshButton.setEnabled(true);
                     String doneMsg = isRefresh ? "↻ Directory refreshed: " : "✓ Folder loaded: ";
                     appendStatus(doneMsg + rootFile.getAbsolutePath());
+                    if (previous != null) {
+                        appendStatus(String.format("⏱ Revalidated %,d folders in %,d ms, %,d changed and relisted, %,d files changed in place (%,d entries)",
+                                scanner.getValidatedFolders(), scanner.getElapsedMillis(),
+                                scanner.getRelistedFolders(), scanner.getChangedFiles(), store.size()));
+                    } else {
+                        appendStatus(String.format("⏱ Scanned %,d entries (%,d folders, %.1f MB) in %,d ms (%,d entries/sec, %d threads), tree ≈ %,d KB",
+                                scanner.getEntryCount(), scanner.getFolderCount(), scanner.getByteCount() / (1024.0 * 1024.0),
+                                scanner.getElapsedMillis(),
+                                scanner.getEntriesPerSecond(), scanner.getParallelism(),
+                                store.estimateBytes() / 1024));
+                    }
+                    List<String> slow = monitor.getSlowFolders();
+                    if (!slow.isEmpty()) {
+                        appendStatus(String.format("🐢 Slowest folders to read: %s (%,d ms in directory reads over all threads)",
+                                String.join(", ", slow), monitor.getReadMillis()));
+                    }
+                    if (scanner.getPrunedEntries() > 0) {
+                        appendStatus(String.format("🚫 Pruned %,d ignored entries (%,d folders not listed, %.1f MB of files)",
+                                scanner.getPrunedEntries(), scanner.getPrunedFolders(),
+                                scanner.getPrunedBytes() / (1024.0 * 1024.0)));
+                    }
+                    if (scanner.getFilteredFiles() > 0) {
+                        appendStatus(String.format("🔎 Filtered out %,d files (%s)",
+                                scanner.getFilteredFiles(), tree.getFileFilter()));
+                    }
                     if (!isRefresh) {
                         appendStatus("✓ Output format: File name only (default)");
                     }
+                    saveSnapshot(false);
+                    restartLiveRefresh();
                 } catch (Exception ex) {
                     appendStatus("❌ Load failed: " + ex.getMessage());
                     showMaterialDialog("Load Error",
@@ -344,58 +720,308 @@ public class DirectoryBrowser {
                     selectButton.setEnabled(true);
                     writeButton.setEnabled(true);
                     refreshButton.setEnabled(true);
+                    restartLiveRefresh();
                 }
             }
         }.execute();
     }
 
-    // Recursively create tree nodes; userObject = File for each node
-    private static DefaultMutableTreeNode createFileTreeNode(File file, Set<String> processing) {
-        DefaultMutableTreeNode node = new DefaultMutableTreeNode(file);
-        if (!file.isDirectory()) {
-            return node;
+    // Replace the tree on screen by its rescanned version, keeping checks and expanded folders by path
+    private static void showRescannedStore(FileTreeStore store) {
+        FileTreeStore old = treeModel.getStore();
+        boolean defaultChecked = tree.getDefaultCheckState();
+        BitSet flags = tree.carryOverCheckState(store);
+
+        int[] newIdOf = new int[old.size()];
+        Arrays.fill(newIdOf, -1);
+        for (int id = 0; id < store.size(); id++) {
+            int prev = store.getPreviousId(id);
+            if (prev >= 0 && prev < newIdOf.length) newIdOf[prev] = id;
+        }
+        newIdOf[0] = 0;
+        List<Integer> expanded = new ArrayList<>();
+        Enumeration<TreePath> paths = tree.getExpandedDescendants(treeModel.getTreePath(0));
+        while (paths != null && paths.hasMoreElements()) {
+            int id = (Integer) paths.nextElement().getLastPathComponent();
+            if (newIdOf[id] >= 0) expanded.add(newIdOf[id]);
+        }
+
+        treeModel = new FileTreeModel(store);
+        tree.setModel(treeModel);
+        tree.restoreCheckState(defaultChecked, flags);
+        for (int id : expanded) tree.expandPath(treeModel.getTreePath(id));
+        store.clearPreviousIds();
+    }
+
+    // In live mode, watch the tree on screen (no-op if it is already watched); otherwise stop watching
+    private static void restartLiveRefresh() {
+        boolean wanted = liveCheckBox != null && liveCheckBox.isSelected() && !scanInProgress
+                && treeModel.getStore() != null && activeScanner != null;
+        if (wanted && liveRefresher != null && liveRefresher.watches(treeModel)) return;
+        if (liveRefresher != null) {
+            liveRefresher.stop();
+            liveRefresher = null;
         }
-        String canonical;
+        if (!wanted) return;
+        LiveRefresher live = new LiveRefresher(tree, treeModel, activeScanner, lazyLoadCheckBox.isSelected(),
+                DirectoryBrowser::appendStatus, () -> {
+                    if (refreshButton.isEnabled()) onRefresh();
+                });
         try {
-            canonical = file.getCanonicalPath();
-        } catch (IOException e) {
-            appendStatus("⚠️ Warning: Could not resolve canonical path for " + file.getAbsolutePath());
-            canonical = file.getAbsolutePath();
+            live.start();
+            liveRefresher = live;
+        } catch (IOException ex) {
+            appendStatus("⚠️ Live refresh not available: " + ex.getMessage());
         }
-        if (processing.contains(canonical)) {
-            node.add(new DefaultMutableTreeNode("... (cyclic reference skipped)"));
-            return node;
+    }
+
+    // Save the full-scan tree and its check state in the background; 'now' writes on the calling thread
+    private static void saveSnapshot(boolean now) {
+        FileTreeStore current = treeModel.getStore();
+        String settingsKey = loadedSettingsKey;
+        if (current == null || settingsKey == null || current.getUnlistedCount() > 0) return; // lazy trees are not saved
+        boolean defaultChecked = tree.getDefaultCheckState();
+        BitSet flags;
+        FileTreeStore store;
+        if (current.hasChildLists() || !now) {
+            // snapshots hold contiguous blocks only (live mode refreshes folders in place), and the
+            // writer thread must not read the store live refresh keeps appending to on the EDT
+            store = current.compact();
+            flags = tree.carryOverCheckState(store);
+            store.clearPreviousIds();
+        } else {
+            store = current;
+            flags = tree.getExplicitCheckFlags();
+        }
+        Runnable save = () -> {
+            try {
+                snapshots.save(store, settingsKey, defaultChecked, flags);
+            } catch (IOException ex) {
+                SwingUtilities.invokeLater(() -> appendStatus("⚠️ Could not save snapshot: " + ex.getMessage()));
+            }
+        };
+        if (now) {
+            save.run();
+        } else {
+            Thread t = new Thread(save, "snapshot-writer");
+            t.setDaemon(true);
+            t.start();
         }
-        processing.add(canonical);
-        File[] children = null;
+    }
+
+    // Parse the filter field and hand it to the tree; an invalid filter is reported and not applied
+    private static FileMatcher applyFileFilter() {
+        FileMatcher filter;
         try {
-            children = file.listFiles();
-        } catch (SecurityException e) {
-            appendStatus("⚠️ Access denied to directory: " + file.getAbsolutePath());
-        }
-        if (children != null) {
-            Arrays.sort(children, (a, b) -> {
-                if (a.isDirectory() && !b.isDirectory()) return -1;
-                if (!a.isDirectory() && b.isDirectory()) return 1;
-                return a.getName().compareToIgnoreCase(b.getName());
-            });
-            for (File c : children) {
-                node.add(createFileTreeNode(c, processing));
+            filter = FileMatcher.parse(filterField.getText());
+        } catch (IllegalArgumentException ex) {
+            appendStatus("⚠️ Invalid filter: " + ex.getMessage());
+            return tree.getFileFilter();
+        }
+        if (!filter.toString().equals(tree.getFileFilter().toString())) {
+            appendStatus("✓ File filter: " + filter);
+        }
+        tree.setFileFilter(filter);
+        return filter;
+    }
+
+    // Re-run the quick filter when the full tree changes (scan, live refresh, lazy listing, new folder)
+    private static void followTreeModel() {
+        if (treeModel == followedModel) return;
+        TreeModelListener changed = new TreeModelListener() {
+            @Override
+            public void treeNodesChanged(TreeModelEvent e) { scheduleQuickFilter(); }
+
+            @Override
+            public void treeNodesInserted(TreeModelEvent e) { scheduleQuickFilter(); }
+
+            @Override
+            public void treeNodesRemoved(TreeModelEvent e) { scheduleQuickFilter(); }
+
+            @Override
+            public void treeStructureChanged(TreeModelEvent e) { scheduleQuickFilter(); }
+        };
+        followedModel = treeModel;
+        treeModel.addTreeModelListener(changed);
+        scheduleQuickFilter();
+    }
+
+    // Run the quick filter soon, at most once per timer period however many changes come
+    private static void scheduleQuickFilter() {
+        if (!searchField.getText().isBlank() && !searchTimer.isRunning()) searchTimer.start();
+    }
+
+    // Show only the entries whose name matches the search text, and the folders above them; blank
+    // text shows the whole tree again. The first search of a tree waits for its name index
+    private static void runQuickFilter() {
+        FileTreeStore store = treeModel.getStore();
+        String text = searchField.getText();
+        searchLabel.setToolTipText(null);
+        if (text.isBlank() || store == null) {
+            searchMatches = new int[0];
+            searchLabel.setText("");
+            checkMatchesButton.setEnabled(false);
+            if (tree.getModel() != treeModel) showTreeView(treeModel);
+            return;
+        }
+        NameIndex.Query query;
+        try {
+            query = NameIndex.Query.parse(text);
+        } catch (IllegalArgumentException ex) {
+            searchLabel.setText("⚠️ invalid");
+            searchLabel.setToolTipText(ex.getMessage());
+            return;
+        }
+        NameIndex index = nameIndex;
+        if (index == null || index.getStore() != store || index.isStale()) {
+            buildNameIndex(store); // runs the filter again when ready
+            if (index == null || index.getStore() != store) {
+                searchLabel.setText("indexing…");
+                return;
             }
         }
-        processing.remove(canonical);
-        return node;
+        long start = System.nanoTime();
+        int[] matches = index.find(query);
+        searchMatches = matches;
+        showTreeView(new FileTreeModel(store, matches));
+        searchLabel.setText(String.format("%,d %s · %,d ms", matches.length, matches.length == 1 ? "match" : "matches",
+                (System.nanoTime() - start) / 1_000_000L));
+        checkMatchesButton.setEnabled(matches.length > 0);
+    }
+
+    // Copy the names of store now and index them in the background, then filter again
+    private static void buildNameIndex(FileTreeStore store) {
+        if (indexingStore == store) return;
+        indexingStore = store;
+        long start = System.nanoTime();
+        NameIndex copy = NameIndex.copy(store);
+        new SwingWorker<NameIndex, Void>() {
+            @Override
+            protected NameIndex doInBackground() {
+                return copy.build();
+            }
+
+            @Override
+            protected void done() {
+                if (indexingStore == store) indexingStore = null;
+                if (treeModel.getStore() != store) return; // another tree was loaded meanwhile
+                try {
+                    nameIndex = get();
+                } catch (Exception ex) {
+                    appendStatus("⚠️ Name index failed: " + ex.getMessage());
+                    return;
+                }
+                appendStatus(String.format("🔎 Indexed %,d names for Find in %,d ms",
+                        store.size(), (System.nanoTime() - start) / 1_000_000L));
+                runQuickFilter();
+            }
+        }.execute();
+    }
+
+    // Put a view of the tree on screen: folders that were open stay open if the view shows them, and a
+    // filtered view opens the folders above its matches (the first MAX_FILTER_EXPAND of them)
+    private static void showTreeView(FileTreeModel view) {
+        List<TreePath> expanded = new ArrayList<>();
+        if (tree.getStore() == view.getStore() && tree.getRowCount() > 0) {
+            Enumeration<TreePath> paths = tree.getExpandedDescendants(tree.getPathForRow(0));
+            while (paths != null && paths.hasMoreElements()) expanded.add(paths.nextElement());
+        }
+        tree.setModel(view);
+        for (TreePath path : expanded) {
+            if (isShown(view, path)) tree.expandPath(path);
+        }
+        int[] folders = view.getFilteredFolders();
+        for (int i = 0; i < folders.length && i < MAX_FILTER_EXPAND; i++) {
+            tree.expandPath(view.getTreePath(folders[i]));
+        }
+    }
+
+    // True if every step of path is a child the view shows
+    private static boolean isShown(FileTreeModel view, TreePath path) {
+        Object[] nodes = path.getPath();
+        for (int i = 1; i < nodes.length; i++) {
+            if (view.getIndexOfChild(nodes[i - 1], nodes[i]) < 0) return false;
+        }
+        return true;
+    }
+
+    // Check every match of the quick filter in one step
+    private static void onCheckMatches() {
+        searchTimer.stop();
+        runQuickFilter(); // the matches of the tree as it is now
+        if (searchMatches.length == 0) return;
+        tree.setChecked(searchMatches, true);
+        appendStatus(String.format("✓ Checked %,d matches of \"%s\"", searchMatches.length, searchField.getText().trim()));
+    }
+
+    // List a directory's visible children sorted folders first, then by name (null if it cannot be listed)
+    private static List<FileEntry> listSortedChildren(DirectoryScanner scanner, FileEntry dir) {
+        try {
+            return scanner.listChildren(dir);
+        } catch (IOException | SecurityException e) {
+            appendStatus("⚠️ Access denied to directory: " + dir.getPath());
+            return null;
+        }
+    }
+
+    // List children of a lazy folder in the background and replace its placeholder when done
+    private static void loadLazyChildren(int node) {
+        if (treeFiller != null && treeFiller.fills(treeModel)) return; // the running scan lists it
+        if (!tree.isUnloaded(node) || !loadingNodes.add(node)) return;
+        FileTreeModel model = treeModel;
+        FileTreeStore store = model.getStore();
+        FileEntry dir = store.getEntry(node);
+        DirectoryScanner scanner = activeScanner;
+
+        new SwingWorker<FileTreeStore.Block, Void>() {
+            @Override
+            protected FileTreeStore.Block doInBackground() {
+                List<FileEntry> children = listSortedChildren(scanner, dir);
+                if (children == null) return new FileTreeStore.Block(0);
+                boolean[] descend = new boolean[children.size()];
+                for (int i = 0; i < descend.length; i++) {
+                    descend[i] = scanner.canDescend(children.get(i));
+                }
+                return FileTreeStore.Block.of(children, descend);
+            }
+
+            @Override
+            protected void done() {
+                loadingNodes.remove(node);
+                if (model != treeModel) return; // tree was reloaded meanwhile
+                try {
+                    FileTreeStore.Block block = get();
+                    store.append(node, block);
+                    tree.childrenListed(node);
+                    model.fireTreeStructureChanged(node);
+                    if (liveRefresher != null) liveRefresher.folderListed(node);
+                    tree.expandPath(model.getTreePath(node));
+                } catch (Exception ex) {
+                    appendStatus("❌ Could not list folder: " + dir.getPath() + " -> " + ex.getMessage());
+                }
+            }
+        }.execute();
     }
 
     // Handler for Write to File button: gather selected files, prompt save path, write combined file
     private static void onWriteToFile() {
-        List<File> selectedFiles = tree.getSelectedFiles();
-        if (selectedFiles.isEmpty()) {
+        FileMatcher filter = applyFileFilter();
+        List<FileEntry> selection = tree.getSelectedFiles();
+        if (selection.isEmpty()) {
             showMaterialDialog("No Files Selected",
                     "Please select at least one file to combine.",
                     JOptionPane.WARNING_MESSAGE);
             return;
         }
+        ChunkedOutput.Limit chunkLimit = null;
+        if (!splitField.getText().isBlank()) {
+            try {
+                chunkLimit = ChunkedOutput.Limit.parse(splitField.getText());
+            } catch (IllegalArgumentException ex) {
+                showMaterialDialog("Invalid Split Limit", ex.getMessage(), JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+        }
 
         JFileChooser saver = createMaterialFileChooser("Save Combined File As...");
         saver.setSelectedFile(new File("Output Combined File.txt"));
@@ -409,7 +1035,8 @@ public class DirectoryBrowser {
         int res = saver.showSaveDialog(frame);
         if (res != JFileChooser.APPROVE_OPTION) return;
 
-        File out = saver.getSelectedFile();
+        CompressedChannel.Codec codec = (CompressedChannel.Codec) codecBox.getSelectedItem();
+        File out = FileCombiner.outputFile(saver.getSelectedFile(), codec);
 
         if (out.exists()) {
             // Create custom option pane with button on the right
@@ -493,53 +1120,113 @@ public class DirectoryBrowser {
         writeButton.setText("Combining Files...");
 
         // Background writing using SwingWorker
-        new SwingWorker<Void, String>() {
+        FileCombiner.BinaryPolicy binaryPolicy = (FileCombiner.BinaryPolicy) binaryPolicyBox.getSelectedItem();
+        FileCombiner combiner = new FileCombiner(fileNameOnlyCheckBox.isSelected(), (Integer) threadsSpinner.getValue(),
+                binaryPolicy, sniffer, incrementalCheckBox.isSelected(), chunkLimit, codec, dedupeCheckBox.isSelected());
+        File logFile = logFileCheckBox.isSelected() ? new File(out.getPath() + ".log") : null;
+        DirectoryScanner scanner = activeScanner;
+        runningCombine = combiner;
+        updateCancelButton();
+        long hitsBefore = sniffer.getCacheHits();
+        new SwingWorker<Void, Void>() {
             @Override
             protected Void doInBackground() {
-                try (BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(out))) {
-                    for (File f : selectedFiles) {
-                        publish("📄 Writing: " + f.getName());
-
-                        // Header format based on checkbox selection
-                        String fileName = fileNameOnlyCheckBox.isSelected() ?
-                                f.getName() : f.getAbsolutePath();
-                        String header = "/ File: " + fileName + " **/\n\n";
-                        bos.write(header.getBytes(StandardCharsets.UTF_8));
-
-                        if (f.isFile() && f.canRead()) {
-                            try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(f))) {
-                                byte[] buffer = new byte[8192];
-                                int len;
-                                while ((len = bis.read(buffer)) != -1) {
-                                    bos.write(buffer, 0, len);
-                                }
-                                bos.write("\n\n".getBytes(StandardCharsets.UTF_8)); // newline after file
-                            } catch (IOException ex) {
-                                publish("❌ Failed to read: " + f.getName() + " -> " + ex.getMessage());
-                            }
-                        } else {
-                            publish("⚠️ Skipping (not a readable file): " + f.getName());
+                // Checked folders that were never expanded are resolved here, off the EDT
+                // warnings of folders that cannot be listed reach the log through the scan monitor
+                List<FileEntry> selectedFiles = scanner.resolveFiles(selection, filter, combiner::isCancelled);
+                if (combiner.isCancelled()) {
+                    statusLog.info("⏹ Combine cancelled");
+                    return null;
+                }
+                long totalBytes = 0;
+                for (FileEntry entry : selectedFiles) totalBytes += entry.getSize();
+                statusLog.startProgress("📄 Writing", selectedFiles.size(), totalBytes);
+                try {
+                    if (logFile != null) statusLog.openLogFile(logFile.toPath());
+                    // per-file lines go to the log file only; the progress line summarizes them
+                    combiner.combine(selectedFiles, out, new FileCombiner.Listener() {
+                        @Override
+                        public void fileStarted(FileEntry entry) {
+                            statusLog.detail("📄 Writing: " + entry.getPath());
+                            statusLog.progress(entry.getSize());
                         }
+
+                        @Override
+                        public void fileSkipped(FileEntry entry) {
+                            statusLog.info("⚠️ Skipping (not a readable file): " + entry.getName());
+                        }
+
+                        @Override
+                        public void readFailed(FileEntry entry, String reason) {
+                            statusLog.info("❌ Failed to read: " + entry.getName() + " -> " + reason);
+                        }
+
+                        @Override
+                        public void binarySkipped(FileEntry entry, String kind) {
+                            statusLog.detail("🧱 Not included (" + kind + "): " + entry.getPath());
+                            if (binaryPolicy == FileCombiner.BinaryPolicy.SKIP) statusLog.progress(entry.getSize());
+                        }
+
+                        @Override
+                        public void fileReused(FileEntry entry) {
+                            statusLog.detail("♻️ Reused: " + entry.getPath());
+                            statusLog.progress(entry.getSize());
+                        }
+                    });
+                    statusLog.info("✅ Write complete: " + out.getAbsolutePath());
+                    SwingUtilities.invokeLater(() -> saveSnapshot(false));
+                    statusLog.info(String.format("⏱ Combined %,d files (%.1f MB) in %,d ms (%,d files/sec, %.1f MB/sec, %d readers)",
+                            combiner.getFilesWritten(), combiner.getBytesWritten() / (1024.0 * 1024.0),
+                            combiner.getElapsedMillis(), combiner.getFilesPerSecond(),
+                            combiner.getMegabytesPerSecond(), combiner.getReaderThreads()));
+                    if (combiner.isCompressed()) {
+                        statusLog.info(String.format("🗜 Compressed to %.1f MB (%.0f%% of %.1f MB): %.1f MB/sec raw, %.1f MB/sec compressed",
+                                combiner.getCompressedBytes() / (1024.0 * 1024.0),
+                                100.0 * combiner.getCompressedBytes() / Math.max(1, combiner.getBytesWritten()),
+                                combiner.getBytesWritten() / (1024.0 * 1024.0),
+                                combiner.getMegabytesPerSecond(), combiner.getCompressedMegabytesPerSecond()));
+                    }
+                    if (!combiner.getChunkFiles().isEmpty()) {
+                        statusLog.info(String.format("✂️ Split into %,d chunks (%s … %s), index: %s", combiner.getChunkFiles().size(),
+                                combiner.getChunkFiles().get(0).getFileName(),
+                                combiner.getChunkFiles().get(combiner.getChunkFiles().size() - 1).getFileName(),
+                                ChunkedOutput.indexFile(out.toPath()).getFileName()));
+                    }
+                    if (combiner.getFilesDeduplicated() > 0) {
+                        statusLog.info(String.format("🧬 Deduplicated %,d identical files (%.1f MB not repeated; %,d same-size candidates hashed in %,d ms)",
+                                combiner.getFilesDeduplicated(), combiner.getBytesDeduplicated() / (1024.0 * 1024.0),
+                                combiner.getDuplicateFinder().getCandidates(), combiner.getDuplicateFinder().getElapsedMillis()));
+                    }
+                    if (combiner.getFilesReused() > 0) {
+                        statusLog.info(String.format("♻️ Reused %,d unchanged files (%.1f MB) from the previous output",
+                                combiner.getFilesReused(), combiner.getBytesReused() / (1024.0 * 1024.0)));
+                    }
+                    if (combiner.getFilesBinary() > 0) {
+                        statusLog.info(String.format("🧱 %,d binary/generated files not included (%,d verdicts reused from cache)",
+                                combiner.getFilesBinary(), sniffer.getCacheHits() - hitsBefore));
                     }
-                    bos.flush();
-                    publish("✅ Write complete: " + out.getAbsolutePath());
                 } catch (IOException ex) {
-                    publish("❌ Error writing output: " + ex.getMessage());
+                    if (combiner.isCancelled()) {
+                        statusLog.info("⏹ Combine cancelled, partial output removed");
+                        return null;
+                    }
+                    statusLog.info("❌ Error writing output: " + ex.getMessage());
                     SwingUtilities.invokeLater(() ->
                             showMaterialDialog("Write Error",
                                     "Failed to write file:\n" + ex.getMessage(),
                                     JOptionPane.ERROR_MESSAGE));
+                } finally {
+                    statusLog.endProgress();
+                    statusLog.closeLogFile();
                 }
+                if (logFile != null) statusLog.info("📝 Details: " + logFile.getAbsolutePath());
                 return null;
             }
 
-            @Override
-            protected void process(List<String> chunks) {
-                for (String s : chunks) appendStatus(s);
-            }
-
             @Override
             protected void done() {
+                runningCombine = null;
+                updateCancelButton();
                 writeButton.setEnabled(true);
                 refreshButton.setEnabled(true);
                 writeButton.setText("Write to File");
@@ -548,6 +1235,24 @@ public class DirectoryBrowser {
         }.execute();
     }
 
+    // Handler for Cancel button: stop the running combine and scan; both wind down at their next check
+    private static void onCancel() {
+        if (runningCombine != null && !runningCombine.isCancelled()) {
+            runningCombine.cancel();
+            appendStatus("⏹ Cancelling combine...");
+        }
+        if (runningScan != null && !runningScan.isCancelled()) {
+            runningScan.cancel();
+            appendStatus("⏹ Cancelling scan...");
+        }
+        updateCancelButton();
+    }
+
+    private static void updateCancelButton() {
+        cancelButton.setEnabled(runningCombine != null && !runningCombine.isCancelled()
+                || runningScan != null && !runningScan.isCancelled());
+    }
+
     // Create material design button with hover effects
     private static JButton createMaterialButton(String text, Color bgColor, Color fgColor, Color hoverColor) {
         JButton button = new JButton(text) {
@@ -934,10 +1639,21 @@ public class DirectoryBrowser {
         };
     }
 
-    // Append status text to right panel log
+    // Refresh the selected files/size figure from the tree's incremental counts (no traversal)
+    private static void updateSelectionStats() {
+        if (filesLabel == null) return;
+        String text = String.format("Files selected: %,d (%.1f MB)",
+                tree.getCheckedFileCount(), tree.getCheckedBytes() / (1024.0 * 1024.0));
+        int unlisted = tree.getCheckedUnlistedCount();
+        if (unlisted > 0) {
+            text += String.format(" + %,d unexpanded folder%s", unlisted, unlisted == 1 ? "" : "s");
+        }
+        filesLabel.setText(text);
+    }
+
+    // Append status text to right panel log (any thread; shown with the next frame)
     private static void appendStatus(String text) {
-        statusArea.append(text + "\n");
-        statusArea.setCaretPosition(statusArea.getDocument().getLength());
+        statusLog.info(text);
     }
 
     // Center the frame on screen
@@ -0,0 +1,731 @@
+// File: DirectoryScanner.java
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * DirectoryScanner - builds the folder tree on a ForkJoinPool, listing sub-folders concurrently.
+ * Children are packed into FileTreeStore blocks in folders-first, by-name order; ignored entries and
+ * filtered files are pruned as each folder is listed.
+ */
+public class DirectoryScanner {
+    // Which symbolic links to folders are traversed; the others are shown as links without children
+    public enum LinkPolicy {
+        NEVER("Never follow links"),
+        WITHIN_ROOT("Follow links within folder"),
+        ALWAYS("Always follow links");
+
+        private final String label;
+
+        LinkPolicy(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    // Folders first, then case-insensitive name
+    public static final Comparator<FileEntry> ORDER = (a, b) -> {
+        if (a.isDirectory() && !b.isDirectory()) return -1;
+        if (!a.isDirectory() && b.isDirectory()) return 1;
+        return a.getName().compareToIgnoreCase(b.getName());
+    };
+
+    // Exclude patterns used when none are given
+    public static final String DEFAULT_EXCLUDES = ".git/";
+
+    // Children of one folder from a streaming scan. The folder is known by its parent's listing and
+    // its position there, so the consumer can find its store id once the parent has been appended
+    public static final class Listing {
+        private final Listing parent;      // null: the children of the root
+        private final int index;           // position of the folder among the parent's children
+        private FileTreeStore.Block block; // released once appended
+        private int firstId = -1;          // store id of the first child, set by the consumer
+
+        Listing(Listing parent, int index, FileTreeStore.Block block) {
+            this.parent = parent;
+            this.index = index;
+            this.block = block;
+        }
+
+        public FileTreeStore.Block getBlock() {
+            return block;
+        }
+
+        // Store id of the folder; valid once the parent listing was appended (parents arrive first)
+        public int getFolderId() {
+            return parent == null ? 0 : parent.firstId + index;
+        }
+
+        // Record where the block went (FileTreeStore.append) and let go of it
+        public void appended(int firstChildId) {
+            firstId = firstChildId;
+            block = null;
+        }
+    }
+
+    // Scan events, delivered on the scanning threads as they happen; implementations must be thread-safe
+    public interface Listener {
+        void warning(String message);                       // a folder could not be read
+
+        default void folderListed(Path dir, int entries, long nanos) { // one directory read, and its duration
+        }
+    }
+
+    private final int parallelism;
+    private final LinkPolicy linkPolicy;
+    private final boolean useIgnoreFiles;
+    private final List<String> excludePatterns;
+    private final FileMatcher fileFilter;
+    private Path rootPath;
+    private Path rootRealPath;
+    private IgnoreRules excludeRules = IgnoreRules.NONE;
+    private final Map<Path, IgnoreRules> rulesCache = new ConcurrentHashMap<>(); // lazy listing
+    private final LongAdder entryCount = new LongAdder();
+    private final LongAdder folderCount = new LongAdder();
+    private final LongAdder byteCount = new LongAdder();
+    private final LongAdder prunedEntries = new LongAdder();
+    private final LongAdder prunedFolders = new LongAdder();
+    private final LongAdder prunedBytes = new LongAdder();
+    private final LongAdder filteredFiles = new LongAdder();
+    private final LongAdder validatedFolders = new LongAdder();
+    private final LongAdder relistedFolders = new LongAdder();
+    private final LongAdder changedFiles = new LongAdder();
+    private final Queue<String> warnings = new ConcurrentLinkedQueue<>();
+    private volatile Listener listener;              // null: warnings are queued for drainWarnings
+    private volatile boolean cancelled;
+    private volatile long startNanos;
+    private long elapsedNanos;
+
+    // excludePatterns use .gitignore syntax relative to the scanned root
+    public DirectoryScanner(int parallelism, LinkPolicy linkPolicy, boolean useIgnoreFiles,
+                            List<String> excludePatterns, FileMatcher fileFilter) {
+        this.parallelism = Math.max(1, parallelism);
+        this.linkPolicy = linkPolicy;
+        this.useIgnoreFiles = useIgnoreFiles;
+        this.excludePatterns = new ArrayList<>(excludePatterns);
+        this.fileFilter = fileFilter;
+    }
+
+    // Split a comma or newline separated pattern list (UI field / CLI value)
+    public static List<String> parsePatterns(String text) {
+        List<String> out = new ArrayList<>();
+        for (String p : text.split("[,\\n]")) {
+            if (!p.trim().isEmpty()) out.add(p.trim());
+        }
+        return out;
+    }
+
+    // Default parallelism: one worker per available core
+    public static int defaultParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    // Scan the whole tree below root into a compact store; CancellationException after cancel()
+    public FileTreeStore scan(File root) {
+        long start = System.nanoTime();
+        startNanos = start;
+        Path rootDir = root.toPath().toAbsolutePath();
+        setRoot(rootDir);
+        FileEntry rootEntry = FileEntry.read(rootDir);
+        entryCount.increment();
+        FileTreeStore store = new FileTreeStore(rootEntry, rootEntry.isDirectory());
+        if (!rootEntry.isDirectory()) {
+            elapsedNanos = System.nanoTime() - start;
+            return store;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            FileTreeStore.Block block = pool.invoke(new ScanTask(rootEntry,
+                    new Ancestor(identityOf(rootEntry), null), IgnoreRules.NONE));
+            checkCancelled();
+            if (block != null) store.append(0, block);
+            return store;
+        } finally {
+            pool.shutdown();
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    // Scan the tree below root without building it: the children of every folder go to sink (from the
+    // scanning threads) as soon as they are listed, a folder's listing always before those of its
+    // sub-folders. Folders that cannot be read get an empty listing; CancellationException after cancel()
+    public void scanStreaming(File root, Consumer<Listing> sink) {
+        long start = System.nanoTime();
+        startNanos = start;
+        Path rootDir = root.toPath().toAbsolutePath();
+        setRoot(rootDir);
+        FileEntry rootEntry = FileEntry.read(rootDir);
+        entryCount.increment();
+        if (!rootEntry.isDirectory()) {
+            elapsedNanos = System.nanoTime() - start;
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new ScanTask(rootEntry, new Ancestor(identityOf(rootEntry), null), IgnoreRules.NONE,
+                    sink, null, 0));
+            checkCancelled();
+        } finally {
+            pool.shutdown();
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    // Rescan root starting from a previous store of the same root; unchanged folders are reused.
+    // Entries of the result remember their previous id (FileTreeStore.getPreviousId)
+    public FileTreeStore rescan(File root, FileTreeStore previous) {
+        Path rootDir = root.toPath().toAbsolutePath();
+        if (previous == null || !previous.getRootPath().equals(rootDir) || previous.size() == 0) return scan(root);
+        long start = System.nanoTime();
+        startNanos = start;
+        setRoot(rootDir);
+        FileEntry rootEntry = FileEntry.read(rootDir);
+        entryCount.increment();
+        FileTreeStore store = new FileTreeStore(rootEntry, rootEntry.isDirectory());
+        if (!rootEntry.isDirectory()) {
+            elapsedNanos = System.nanoTime() - start;
+            return store;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            FileTreeStore.Block block = pool.invoke(new RescanTask(previous, 0, rootDir, null, IgnoreRules.NONE));
+            checkCancelled();
+            if (block != null) store.append(0, block);
+            return store;
+        } finally {
+            pool.shutdown();
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    // Stop the running scan (from any thread); a cancelled scanner stays cancelled. Tasks check the flag
+    // before each directory read, so the pool winds down after the reads in flight
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void checkCancelled() {
+        if (cancelled) throw new CancellationException("Scan cancelled");
+    }
+
+    // Settings that change what a scan produces; a saved snapshot is only reused when they match
+    public String getSettingsKey() {
+        return linkPolicy.name() + "|" + useIgnoreFiles + "|" + String.join(",", excludePatterns) + "|" + fileFilter;
+    }
+
+    // Set the folder that WITHIN_ROOT links must resolve into (scan() does this itself)
+    public void setRoot(Path root) {
+        rootPath = root.toAbsolutePath(); // same form as the traversed paths
+        excludeRules = IgnoreRules.compile(rootPath, excludePatterns, IgnoreRules.NONE);
+        rulesCache.clear();
+        try {
+            rootRealPath = root.toRealPath();
+        } catch (IOException e) {
+            rootRealPath = root.toAbsolutePath().normalize();
+        }
+    }
+
+    // True if the entry is a folder whose children should be listed under the link policy
+    public boolean canDescend(FileEntry entry) {
+        if (!entry.isDirectory()) return false;
+        if (!entry.isSymbolicLink() || linkPolicy == LinkPolicy.ALWAYS) return true;
+        if (linkPolicy == LinkPolicy.NEVER || rootRealPath == null) return false;
+        try {
+            return entry.getPath().toRealPath().startsWith(rootRealPath);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Identity used for loop detection: the file key, or the real path where keys are unsupported
+    public static Object identityOf(FileEntry entry) {
+        if (entry.getFileKey() != null) return entry.getFileKey();
+        try {
+            return entry.getPath().toRealPath().toString();
+        } catch (IOException e) {
+            return entry.getPath().toAbsolutePath().toString();
+        }
+    }
+
+    // Send warnings and directory reads to listener instead of queueing warnings (null: queue again)
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    // Live counters: safe to read from any thread while a scan is running
+    public long getEntryCount() {
+        return entryCount.sum();
+    }
+
+    // Directories read so far (folders copied unchanged by a rescan are not read)
+    public long getFolderCount() {
+        return folderCount.sum();
+    }
+
+    // Bytes of the files found so far
+    public long getByteCount() {
+        return byteCount.sum();
+    }
+
+    // Time since the running (or last) scan started
+    public long getRunningMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000L;
+    }
+
+    // Entries per second of the last scan
+    public long getEntriesPerSecond() {
+        return elapsedNanos == 0 ? 0 : getEntryCount() * 1_000_000_000L / elapsedNanos;
+    }
+
+    // Entries skipped by ignore rules; a pruned folder counts once and its contents are never listed
+    public long getPrunedEntries() {
+        return prunedEntries.sum();
+    }
+
+    public long getPrunedFolders() {
+        return prunedFolders.sum();
+    }
+
+    // Bytes of the pruned files (not including the contents of pruned folders)
+    public long getPrunedBytes() {
+        return prunedBytes.sum();
+    }
+
+    // Folders checked by the last rescan, and those of them that had changed and were listed again
+    public long getValidatedFolders() {
+        return validatedFolders.sum();
+    }
+
+    public long getRelistedFolders() {
+        return relistedFolders.sum();
+    }
+
+    // Files of unchanged folders whose size or mtime changed (edited in place) in the last rescan
+    public long getChangedFiles() {
+        return changedFiles.sum();
+    }
+
+    // Files left out by the file filter
+    public long getFilteredFiles() {
+        return filteredFiles.sum();
+    }
+
+    // Warnings collected so far (scan or resolveFiles) while no listener is set; draining removes them
+    public List<String> drainWarnings() {
+        List<String> out = new ArrayList<>();
+        for (String w; (w = warnings.poll()) != null; ) out.add(w);
+        return out;
+    }
+
+    // List a directory's children with their attributes (one DirectoryStream, one attribute read per
+    // entry), sorted folders first, then by name
+    public static List<FileEntry> listSorted(Path dir) throws IOException {
+        List<FileEntry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                entries.add(FileEntry.read(child));
+            }
+        }
+        entries.sort(ORDER);
+        return entries;
+    }
+
+    // List a folder's visible children (ignored entries removed), e.g. for lazy expansion
+    public List<FileEntry> listChildren(FileEntry dir) throws IOException {
+        List<FileEntry> children = list(dir.getPath());
+        return prune(children, rulesFor(dir.getPath(), children));
+    }
+
+    // List a folder of the tree on screen again (live refresh); its ignore files are read again
+    public List<FileEntry> relistChildren(FileEntry dir) throws IOException {
+        rulesCache.keySet().removeIf(p -> p.startsWith(dir.getPath()));
+        return listChildren(dir);
+    }
+
+    // Block for children that appeared in a listed folder since it was listed (live refresh), in the
+    // given order; new sub-folders are scanned in full, with loops checked against the folders above
+    public FileTreeStore.Block scanAdded(Path dir, List<FileEntry> added) {
+        Ancestor chain = null;
+        if (rootPath != null && dir.startsWith(rootPath)) {
+            for (Path p = rootPath; ; p = p.resolve(dir.getName(p.getNameCount()))) {
+                chain = new Ancestor(identityOf(FileEntry.read(p)), chain);
+                if (p.getNameCount() >= dir.getNameCount()) break;
+            }
+        }
+        IgnoreRules inner = rulesFor(dir, null);
+        FileTreeStore.Block block = new FileTreeStore.Block(added.size());
+        List<ScanTask> subTasks = new ArrayList<>();
+        List<Integer> subIndexes = new ArrayList<>();
+        for (FileEntry child : added) {
+            count(child);
+            boolean descend = canDescend(child);
+            int index = block.add(child, descend, false);
+            if (!descend) continue;
+            Object key = identityOf(child);
+            if (chain != null && chain.contains(key)) {
+                block.markLoop(index);
+            } else {
+                subTasks.add(new ScanTask(child, new Ancestor(key, chain), inner));
+                subIndexes.add(index);
+            }
+        }
+        if (subTasks.isEmpty()) return block;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (ScanTask task : subTasks) pool.execute(task);
+            for (int i = 0; i < subTasks.size(); i++) {
+                block.setSubBlock(subIndexes.get(i), subTasks.get(i).join());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return block;
+    }
+
+    // listSorted, counted and reported to the listener
+    private List<FileEntry> list(Path dir) throws IOException {
+        long start = System.nanoTime();
+        List<FileEntry> children = listSorted(dir);
+        folderCount.increment();
+        Listener l = listener;
+        if (l != null) l.folderListed(dir, children.size(), System.nanoTime() - start);
+        return children;
+    }
+
+    private void warn(String message) {
+        Listener l = listener;
+        if (l != null) l.warning(message);
+        else warnings.add(message);
+    }
+
+    // One entry of the tree found
+    private void count(FileEntry entry) {
+        entryCount.increment();
+        if (entry.isFile()) byteCount.add(entry.getSize());
+    }
+
+    // Ignore-file rules in effect inside dir, read from the root down and cached per folder
+    private IgnoreRules rulesFor(Path dir, List<FileEntry> children) {
+        if (!useIgnoreFiles || rootPath == null || !dir.startsWith(rootPath)) return IgnoreRules.NONE;
+        IgnoreRules cached = rulesCache.get(dir);
+        if (cached != null) return cached;
+        IgnoreRules above = dir.equals(rootPath) ? IgnoreRules.NONE : rulesFor(dir.getParent(), null);
+        IgnoreRules rules = children != null ? above.enter(dir, children) : above.enter(dir);
+        rulesCache.put(dir, rules);
+        return rules;
+    }
+
+    // Drop ignored entries and filtered files and count them. This runs before any sub-folder is
+    // listed, so an ignored subtree costs one name match instead of a walk
+    private List<FileEntry> prune(List<FileEntry> children, IgnoreRules rules) {
+        if (rules == IgnoreRules.NONE && excludeRules == IgnoreRules.NONE && fileFilter.acceptsAll()) return children;
+        List<FileEntry> kept = new ArrayList<>(children.size());
+        for (FileEntry child : children) {
+            boolean dir = child.isDirectory();
+            if (excludeRules.isIgnored(child.getPath(), dir) || rules.isIgnored(child.getPath(), dir)) {
+                prunedEntries.increment();
+                if (dir) prunedFolders.increment();
+                else if (child.isFile()) prunedBytes.add(child.getSize());
+            } else if (!fileFilter.accepts(rootPath, child)) {
+                filteredFiles.increment();
+            } else {
+                kept.add(child);
+            }
+        }
+        return kept;
+    }
+
+    // Replace folders in a selection (checked but never expanded) with all files under them that
+    // pass filter, in tree order
+    public List<FileEntry> resolveFiles(List<FileEntry> selection, FileMatcher filter) {
+        return resolveFiles(selection, filter, () -> false);
+    }
+
+    // As above; stops listing folders (returning what was found so far) once stop returns true
+    public List<FileEntry> resolveFiles(List<FileEntry> selection, FileMatcher filter, BooleanSupplier stop) {
+        List<FileEntry> out = new ArrayList<>();
+        Set<Object> processing = new HashSet<>();
+        for (FileEntry f : selection) {
+            if (f.isDirectory()) {
+                collectFilesUnder(f, processing, filter, out, stop);
+            } else {
+                out.add(f);
+            }
+        }
+        return out;
+    }
+
+    // Recursively collect regular files below a folder, skipping cyclic links (by file key)
+    private void collectFilesUnder(FileEntry dir, Set<Object> processing, FileMatcher filter, List<FileEntry> out,
+                                   BooleanSupplier stop) {
+        if (stop.getAsBoolean()) return;
+        Object key = identityOf(dir);
+        if (!processing.add(key)) return;
+        List<FileEntry> children;
+        try {
+            children = listChildren(dir);
+        } catch (IOException | SecurityException e) {
+            warn("⚠️ Access denied to directory: " + dir.getPath());
+            children = Collections.emptyList();
+        }
+        for (FileEntry c : children) {
+            if (c.isDirectory()) {
+                if (canDescend(c)) collectFilesUnder(c, processing, filter, out, stop);
+            } else if (c.isFile() && filter.accepts(rootPath, c)) {
+                out.add(c);
+            }
+        }
+        processing.remove(key);
+    }
+
+    private static final byte[][] IGNORE_FILE_NAMES = {
+            IgnoreRules.FILE_NAMES[0].getBytes(StandardCharsets.UTF_8),
+            IgnoreRules.FILE_NAMES[1].getBytes(StandardCharsets.UTF_8)};
+
+    // True if one of the listed children of dir is an ignore file
+    private static boolean hasIgnoreFile(FileTreeStore store, int dir) {
+        for (int i = 0; i < store.getChildCount(dir); i++) {
+            for (byte[] name : IGNORE_FILE_NAMES) {
+                if (store.nameEquals(store.getChild(dir, i), name)) return true;
+            }
+        }
+        return false;
+    }
+
+    // File keys of the folders above a task, used to detect symlink loops per branch
+    private static final class Ancestor {
+        final Object key;
+        final Ancestor parent;
+
+        Ancestor(Object key, Ancestor parent) {
+            this.key = key;
+            this.parent = parent;
+        }
+
+        boolean contains(Object other) {
+            for (Ancestor a = this; a != null; a = a.parent) {
+                if (a.key.equals(other)) return true;
+            }
+            return false;
+        }
+    }
+
+    // Lists one folder into a Block; sub-folders are forked and attached back in sorted order,
+    // or, when streaming, the block is handed to the sink before the sub-folders are forked
+    @SuppressWarnings("serial") // ForkJoin tasks are Serializable by inheritance only; never serialized
+    private final class ScanTask extends RecursiveTask<FileTreeStore.Block> {
+        private final FileEntry entry;
+        private final Ancestor chain;   // this folder and the folders above it
+        private final IgnoreRules rules; // ignore rules of the folders above
+        private final Consumer<Listing> sink; // null: build the tree
+        private final Listing parentListing;
+        private final int index;        // position in the parent listing
+
+        ScanTask(FileEntry entry, Ancestor chain, IgnoreRules rules) {
+            this(entry, chain, rules, null, null, 0);
+        }
+
+        ScanTask(FileEntry entry, Ancestor chain, IgnoreRules rules, Consumer<Listing> sink, Listing parentListing,
+                 int index) {
+            this.entry = entry;
+            this.chain = chain;
+            this.rules = rules;
+            this.sink = sink;
+            this.parentListing = parentListing;
+            this.index = index;
+        }
+
+        @Override
+        protected FileTreeStore.Block compute() {
+            if (cancelled) return null;
+            List<FileEntry> children;
+            try {
+                children = list(entry.getPath());
+            } catch (IOException | SecurityException e) {
+                warn("⚠️ Access denied to directory: " + entry.getPath());
+                if (sink != null) sink.accept(new Listing(parentListing, index, new FileTreeStore.Block(0)));
+                return null;
+            }
+            IgnoreRules inner = useIgnoreFiles ? rules.enter(entry.getPath(), children) : rules;
+            children = prune(children, inner);
+
+            FileTreeStore.Block block = new FileTreeStore.Block(children.size());
+            Listing listing = sink != null ? new Listing(parentListing, index, block) : null;
+            List<ScanTask> subTasks = new ArrayList<>();
+            List<Integer> subIndexes = new ArrayList<>();
+            for (FileEntry child : children) {
+                count(child);
+                boolean descend = canDescend(child);
+                int i = block.add(child, descend, false);
+                if (!descend) continue;
+                Object key = identityOf(child);
+                if (chain.contains(key)) {
+                    block.markLoop(i);
+                } else {
+                    subTasks.add(new ScanTask(child, new Ancestor(key, chain), inner, sink, listing, i));
+                    subIndexes.add(i);
+                }
+            }
+            // the block is complete (and no longer touched) before it is handed over
+            if (sink != null) sink.accept(listing);
+            for (ScanTask task : subTasks) task.fork();
+            // Attach folders in sorted position so the result does not depend on scheduling
+            for (int i = 0; i < subTasks.size(); i++) {
+                FileTreeStore.Block sub = subTasks.get(i).join();
+                if (sink == null) block.setSubBlock(subIndexes.get(i), sub);
+            }
+            return sink == null ? block : null;
+        }
+    }
+
+    // Revalidates one folder of a previous store: copies it when its mtime is unchanged, relists it
+    // otherwise (matching children by name); sub-folders are forked and attached back in order.
+    // Editing a file in place leaves its folder's mtime alone, so the files of a copied folder are
+    // still stat'ed and take their current size and mtime
+    @SuppressWarnings("serial") // like ScanTask: never serialized
+    private final class RescanTask extends RecursiveTask<FileTreeStore.Block> {
+        private final FileTreeStore previous;
+        private final int previousId;
+        private final Path path;
+        private final Ancestor chain;    // folders above this one
+        private final IgnoreRules rules; // ignore rules of the folders above
+
+        RescanTask(FileTreeStore previous, int previousId, Path path, Ancestor chain, IgnoreRules rules) {
+            this.previous = previous;
+            this.previousId = previousId;
+            this.path = path;
+            this.chain = chain;
+            this.rules = rules;
+        }
+
+        @Override
+        protected FileTreeStore.Block compute() {
+            if (cancelled) return null;
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException | SecurityException e) {
+                warn("⚠️ Access denied to directory: " + path);
+                return null;
+            }
+            validatedFolders.increment();
+            Object key = attrs.fileKey() != null ? attrs.fileKey() : identityOf(FileEntry.read(path));
+            Ancestor self = new Ancestor(key, chain);
+            boolean unchanged = previous.getChildCount(previousId) >= 0
+                    && attrs.lastModifiedTime().toMillis() == previous.getLastModified(previousId);
+
+            FileTreeStore.Block block;
+            List<RecursiveTask<FileTreeStore.Block>> subTasks = new ArrayList<>();
+            List<Integer> subIndexes = new ArrayList<>();
+            if (unchanged) {
+                int count = previous.getChildCount(previousId);
+                IgnoreRules inner = useIgnoreFiles && hasIgnoreFile(previous, previousId) ? rules.enter(path) : rules;
+                block = new FileTreeStore.Block(count);
+                for (int i = 0; i < count; i++) {
+                    int c = previous.getChild(previousId, i);
+                    entryCount.increment();
+                    int index = block.addFrom(previous, c);
+                    if (previous.isFile(c)) byteCount.add(revalidateFile(block, index, previous, c));
+                    if (!previous.isExpandable(c)) continue;
+                    RescanTask task = new RescanTask(previous, c, path.resolve(previous.getName(c)), self, inner);
+                    task.fork();
+                    subTasks.add(task);
+                    subIndexes.add(index);
+                }
+            } else {
+                relistedFolders.increment();
+                List<FileEntry> children;
+                try {
+                    children = list(path);
+                } catch (IOException | SecurityException e) {
+                    warn("⚠️ Access denied to directory: " + path);
+                    return null;
+                }
+                IgnoreRules inner = useIgnoreFiles ? rules.enter(path, children) : rules;
+                children = prune(children, inner);
+
+                Map<String, Integer> before = new HashMap<>();
+                int count = Math.max(0, previous.getChildCount(previousId));
+                for (int i = 0; i < count; i++) {
+                    int c = previous.getChild(previousId, i);
+                    before.put(previous.getName(c), c);
+                }
+
+                block = new FileTreeStore.Block(children.size());
+                for (FileEntry child : children) {
+                    count(child);
+                    boolean descend = canDescend(child);
+                    int index = block.add(child, descend, false);
+                    Integer old = before.get(child.getName());
+                    boolean same = old != null && previous.isDirectory(old) == child.isDirectory();
+                    if (same) block.setSourceId(index, old);
+                    if (!descend) continue;
+                    Object childKey = identityOf(child);
+                    if (self.contains(childKey)) {
+                        block.markLoop(index);
+                        continue;
+                    }
+                    RecursiveTask<FileTreeStore.Block> task = same && previous.isExpandable(old)
+                            ? new RescanTask(previous, old, child.getPath(), self, inner)
+                            : new ScanTask(child, new Ancestor(childKey, self), inner);
+                    task.fork();
+                    subTasks.add(task);
+                    subIndexes.add(index);
+                }
+            }
+            for (int i = 0; i < subTasks.size(); i++) {
+                block.setSubBlock(subIndexes.get(i), subTasks.get(i).join());
+            }
+            return block;
+        }
+
+        // Take the current size and mtime of a copied file (read like FileEntry.read: links followed);
+        // returns its size
+        private long revalidateFile(FileTreeStore.Block block, int index, FileTreeStore previous, int id) {
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(path.resolve(previous.getName(id)), BasicFileAttributes.class);
+            } catch (IOException | SecurityException e) {
+                return previous.getSize(id); // gone meanwhile: the next change of the folder relists it
+            }
+            long size = attrs.size();
+            long modified = attrs.lastModifiedTime().toMillis();
+            if (size != previous.getSize(id) || modified != previous.getLastModified(id)) {
+                block.setAttributes(index, size, modified);
+                changedFiles.increment();
+            }
+            return size;
+        }
+    }
+}
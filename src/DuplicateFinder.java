@@ -0,0 +1,152 @@
+// File: DuplicateFinder.java
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * DuplicateFinder - finds files in a combine list whose content is byte-identical to an earlier one.
+ * Files are grouped by size first; only sizes shared by two or more files are hashed (SHA-256, in
+ * parallel), so a tree without copies costs one pass over the attributes. Each later copy maps to the
+ * first file in list order with the same digest. Unreadable files are simply not deduplicated.
+ * cancel() makes a running search stop hashing and throw InterruptedIOException.
+ */
+public class DuplicateFinder {
+    private final int threads;
+    private volatile boolean cancelled;
+
+    private long candidates;
+    private long hashedBytes;
+    private long duplicateBytes;
+    private long elapsedNanos;
+
+    public DuplicateFinder(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    // Stop the running search (from any thread); a cancelled finder stays cancelled
+    public void cancel() {
+        cancelled = true;
+    }
+
+    // Later copy -> first file with identical content (identity keys: entries are not value objects)
+    public Map<FileEntry, FileEntry> find(List<FileEntry> files) throws IOException {
+        long start = System.nanoTime();
+        candidates = 0;
+        hashedBytes = 0;
+        duplicateBytes = 0;
+        Map<Long, List<FileEntry>> bySize = new HashMap<>();
+        for (FileEntry entry : files) {
+            if (entry.isFile() && entry.getSize() > 0) {
+                bySize.computeIfAbsent(entry.getSize(), k -> new ArrayList<>(2)).add(entry);
+            }
+        }
+        List<List<FileEntry>> groups = new ArrayList<>();
+        for (List<FileEntry> group : bySize.values()) {
+            if (group.size() > 1) {
+                groups.add(group);
+                candidates += group.size();
+                hashedBytes += group.size() * group.get(0).getSize();
+            }
+        }
+        Map<FileEntry, FileEntry> duplicateOf = new IdentityHashMap<>();
+        if (groups.isEmpty()) {
+            elapsedNanos = System.nanoTime() - start;
+            return duplicateOf;
+        }
+
+        ExecutorService hashers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "dedupe-hasher");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<List<Future<byte[]>>> digests = new ArrayList<>(groups.size());
+            for (List<FileEntry> group : groups) {
+                List<Future<byte[]>> futures = new ArrayList<>(group.size());
+                for (FileEntry entry : group) futures.add(hashers.submit(() -> digest(entry)));
+                digests.add(futures);
+            }
+            for (int g = 0; g < groups.size(); g++) {
+                List<FileEntry> group = groups.get(g);
+                // groups keep list order, so the first entry per digest is the one written in full
+                Map<ByteBuffer, FileEntry> firstByDigest = new HashMap<>();
+                for (int i = 0; i < group.size(); i++) {
+                    if (cancelled) throw new InterruptedIOException("Duplicate search cancelled");
+                    byte[] digest = await(digests.get(g).get(i));
+                    if (digest == null) continue;
+                    FileEntry first = firstByDigest.putIfAbsent(ByteBuffer.wrap(digest), group.get(i));
+                    if (first != null) {
+                        duplicateOf.put(group.get(i), first);
+                        duplicateBytes += group.get(i).getSize();
+                    }
+                }
+            }
+        } finally {
+            hashers.shutdownNow();
+            elapsedNanos = System.nanoTime() - start;
+        }
+        return duplicateOf;
+    }
+
+    // SHA-256 of the whole file, or null when it cannot be read (or the search was cancelled)
+    private byte[] digest(FileEntry entry) {
+        try (FileChannel in = FileChannel.open(entry.getPath(), StandardOpenOption.READ)) {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            while (in.read(buffer) != -1) {
+                if (cancelled) return null;
+                buffer.flip();
+                md.update(buffer);
+                buffer.clear();
+            }
+            return md.digest();
+        } catch (IOException e) {
+            return null;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 is required on every Java platform
+        }
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Duplicate search interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // Files that shared their size with another file and were hashed
+    public long getCandidates() {
+        return candidates;
+    }
+
+    public long getHashedBytes() {
+        return hashedBytes;
+    }
+
+    // Bytes of all later copies found by the last search
+    public long getDuplicateBytes() {
+        return duplicateBytes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000L;
+    }
+}
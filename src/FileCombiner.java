@@ -0,0 +1,667 @@
+// File: FileCombiner.java
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * FileCombiner - writes the selected files into one output file, each preceded by a header.
+ * Bodies are copied kernel-side where possible; the output can be split, compressed, deduplicated and
+ * built incrementally from the previous one. No UI dependencies: progress goes to a Listener.
+ */
+public class FileCombiner {
+    // What to do with files the sniffer does not consider text
+    public enum BinaryPolicy {
+        SKIP("Binary: skip"),
+        SUMMARIZE("Binary: summarize"),
+        INCLUDE("Binary: include");
+
+        private final String label;
+
+        BinaryPolicy(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    // Progress callbacks, invoked on the combining thread in output order
+    public interface Listener {
+        void fileStarted(FileEntry entry);
+
+        void fileSkipped(FileEntry entry);              // not a regular file; only the header is written
+
+        void readFailed(FileEntry entry, String reason);
+
+        void binarySkipped(FileEntry entry, String kind); // left out or summarized under the BinaryPolicy
+
+        default void fileReused(FileEntry entry) {        // copied from the previous output (incremental)
+        }
+    }
+
+    private static final byte[] SEPARATOR = "\n\n".getBytes(StandardCharsets.UTF_8);
+
+    // Files up to this size are read ahead into memory; larger ones are streamed by the writer
+    private static final long PREFETCH_LIMIT = 1024 * 1024;
+    // Upper bound on bytes held by read-ahead files at any time
+    private static final long MEMORY_CAP = 64L * 1024 * 1024;
+    // Bodies are transferred in slices of this size so a cancel is noticed within a large file
+    private static final long TRANSFER_SLICE = 16L * 1024 * 1024;
+
+    private final boolean fileNameOnly;
+    private final int readerThreads;
+    private final BinaryPolicy binaryPolicy;
+    private final ContentSniffer sniffer;
+    private final boolean incremental;
+    private final ChunkedOutput.Limit chunkLimit;
+    private final CompressedChannel.Codec codec;
+    private final DuplicateFinder duplicateFinder; // null unless deduplicating
+    private final ByteBuffer copyBuffer = ByteBuffer.allocateDirect(64 * 1024);
+    private volatile boolean cancelled;
+
+    // Incremental state of the running combine
+    private CombineManifest previous;             // null when nothing can be reused
+    private FileChannel previousOutput;
+    private List<CombineManifest.Entry> segments; // manifest of the output being written (incremental only)
+    private long runStart;                        // pending copy from the previous output
+    private long runLength;
+    private ChunkedOutput output;                 // files of the running combine
+    private Map<FileEntry, FileEntry> duplicateOf = Map.of(); // later copy -> first copy
+    private Set<FileEntry> bodiesWritten;         // files whose body is in the output (dedupe only)
+    private List<Path> chunkFiles = List.of();
+
+    private long filesWritten;
+    private long filesFailed;
+    private long filesBinary;
+    private long bytesWritten;
+    private long filesReused;
+    private long bytesReused;
+    private long compressedBytes;
+    private long filesDeduplicated;
+    private long bytesDeduplicated;
+    private long elapsedNanos;
+
+    // The sniffer may be shared between combines so unchanged files are not sniffed again
+    public FileCombiner(boolean fileNameOnly, int readerThreads, BinaryPolicy binaryPolicy, ContentSniffer sniffer,
+                        boolean incremental, ChunkedOutput.Limit chunkLimit, CompressedChannel.Codec codec,
+                        boolean dedupe) {
+        this.fileNameOnly = fileNameOnly;
+        this.readerThreads = Math.max(1, readerThreads);
+        this.binaryPolicy = binaryPolicy;
+        this.sniffer = sniffer;
+        this.incremental = incremental;
+        this.chunkLimit = chunkLimit;
+        this.codec = codec;
+        this.duplicateFinder = dedupe ? new DuplicateFinder(this.readerThreads) : null;
+    }
+
+    // Stop the running combine (from any thread); a cancelled combiner stays cancelled. The flag is
+    // checked between files and between the slices of a large body
+    public void cancel() {
+        cancelled = true;
+        if (duplicateFinder != null) duplicateFinder.cancel();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void checkCancelled() throws IOException {
+        if (cancelled) throw new InterruptedIOException("Combine cancelled");
+    }
+
+    // Settings that change the bytes of a segment; a manifest written with others is not reused
+    private String settingsKey() {
+        return "names=" + fileNameOnly + "|binary=" + binaryPolicy.name();
+    }
+
+    // Header line written before each file body
+    public String header(FileEntry entry) {
+        File f = entry.toFile();
+        String fileName = fileNameOnly ? f.getName() : f.getAbsolutePath();
+        return "/ File: " + fileName + " **/\n\n";
+    }
+
+    public int getReaderThreads() {
+        return readerThreads;
+    }
+
+    public long getFilesWritten() {
+        return filesWritten;
+    }
+
+    // Binary or generated files skipped or summarized during the last combine
+    public long getFilesBinary() {
+        return filesBinary;
+    }
+
+    // Files that could not be read during the last combine
+    public long getFilesFailed() {
+        return filesFailed;
+    }
+
+    // Uncompressed output bytes of the last combine
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    // Bytes on disk after compression (equal to getBytesWritten without a codec)
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    // Copies written as a reference to an identical earlier file, and the body bytes that saved
+    public long getFilesDeduplicated() {
+        return filesDeduplicated;
+    }
+
+    public long getBytesDeduplicated() {
+        return bytesDeduplicated;
+    }
+
+    // Duplicate search of the last combine (null unless deduplicating)
+    public DuplicateFinder getDuplicateFinder() {
+        return duplicateFinder;
+    }
+
+    public boolean isCompressed() {
+        return codec != CompressedChannel.Codec.NONE;
+    }
+
+    // File written for out: out itself, or out.gz when compressing (chunk names are derived from it)
+    public File outputFile(File out) {
+        return outputFile(out, codec);
+    }
+
+    public static File outputFile(File out, CompressedChannel.Codec codec) {
+        if (codec == CompressedChannel.Codec.NONE || out.getName().endsWith(CompressedChannel.SUFFIX)) return out;
+        return new File(out.getPath() + CompressedChannel.SUFFIX);
+    }
+
+    // Files (and their output bytes) copied unchanged from the previous output by the last combine
+    public long getFilesReused() {
+        return filesReused;
+    }
+
+    public long getBytesReused() {
+        return bytesReused;
+    }
+
+    // Numbered files written by the last combine when a chunk limit was set (empty otherwise)
+    public List<Path> getChunkFiles() {
+        return chunkFiles;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000L;
+    }
+
+    // Files per second of the last combine
+    public long getFilesPerSecond() {
+        return elapsedNanos == 0 ? 0 : filesWritten * 1_000_000_000L / elapsedNanos;
+    }
+
+    // Output megabytes per second of the last combine (uncompressed)
+    public double getMegabytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytesWritten / (1024.0 * 1024.0) / (elapsedNanos / 1e9);
+    }
+
+    // Megabytes per second actually written to disk
+    public double getCompressedMegabytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : compressedBytes / (1024.0 * 1024.0) / (elapsedNanos / 1e9);
+    }
+
+    // Combine files into out (replacing it); per-file problems are reported to the listener and
+    // skipped, failures writing the output are thrown. When cancelled, the files written so far are
+    // deleted (an incremental combine leaves the previous output and its manifest as they were)
+    public void combine(List<FileEntry> files, File out, Listener log) throws IOException {
+        long start = System.nanoTime();
+        filesWritten = 0;
+        filesFailed = 0;
+        filesBinary = 0;
+        bytesWritten = 0;
+        filesReused = 0;
+        bytesReused = 0;
+        compressedBytes = 0;
+        filesDeduplicated = 0;
+        bytesDeduplicated = 0;
+        runLength = 0;
+        chunkFiles = List.of();
+        Path outPath = outputFile(out).toPath();
+        // manifest offsets address one uncompressed output file, so reuse is off when splitting or compressing
+        boolean reuse = incremental && chunkLimit == null && !isCompressed();
+        previous = reuse ? CombineManifest.load(outPath, settingsKey()) : null;
+        segments = reuse ? new ArrayList<>() : null;
+        // segments are copied out of the previous output, so the new one is written beside it
+        Path writePath = previous != null ? outPath.resolveSibling(outPath.getFileName() + ".tmp") : outPath;
+        // hashed up front, in parallel, so the writer knows which bodies it has seen before
+        duplicateOf = duplicateFinder != null ? duplicateFinder.find(files) : Map.of();
+        bodiesWritten = duplicateOf.isEmpty() ? null : Collections.newSetFromMap(new IdentityHashMap<>());
+        ExecutorService compressors = codec == CompressedChannel.Codec.PARALLEL_GZIP
+                ? Executors.newFixedThreadPool(readerThreads, r -> {
+                    Thread t = new Thread(r, "combine-compressor");
+                    t.setDaemon(true);
+                    return t;
+                })
+                : null;
+        List<Path> written = List.of();
+        try {
+            ChunkedOutput finished; // its counters are final once it is closed
+            try (ChunkedOutput chunks = new ChunkedOutput(writePath, chunkLimit, codec, compressors, readerThreads)) {
+                output = chunks;
+                finished = chunks;
+                if (previous != null) previousOutput = FileChannel.open(outPath, StandardOpenOption.READ);
+                if (readerThreads == 1) {
+                    combineSequential(files, log);
+                } else {
+                    combinePipelined(files, log);
+                }
+                flushReused();
+            } finally {
+                if (compressors != null) compressors.shutdownNow();
+                if (output != null) written = output.getChunks();
+                output = null;
+                if (previousOutput != null) previousOutput.close();
+                previousOutput = null;
+            }
+            bytesWritten = finished.getBytesWritten();
+            compressedBytes = finished.getCompressedBytesWritten();
+            chunkFiles = finished.isChunked() ? finished.getChunks() : List.of();
+            if (writePath != outPath) {
+                Files.move(writePath, outPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            if (reuse) {
+                CombineManifest.save(outPath, settingsKey(), segments);
+            } else {
+                CombineManifest.delete(outPath);
+            }
+        } catch (IOException e) {
+            if (writePath != outPath) {
+                Files.deleteIfExists(writePath);
+            } else if (cancelled) {
+                deletePartial(outPath, written);
+            }
+            throw e;
+        } finally {
+            previous = null;
+            segments = null;
+            duplicateOf = Map.of();
+            bodiesWritten = null;
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    // Remove the output of a cancelled combine: the chunks written, the index and the (now stale) manifest
+    private void deletePartial(Path outPath, List<Path> written) throws IOException {
+        for (Path chunk : written) Files.deleteIfExists(chunk);
+        if (chunkLimit != null) Files.deleteIfExists(ChunkedOutput.indexFile(outPath));
+        CombineManifest.delete(outPath);
+    }
+
+    // Size and mtime of the file on disk now, taken before it is read, for reuse and the sniffer cache
+    // (the scanned attributes may be older than the content); null when not needed or unreadable
+    private BasicFileAttributes stat(FileEntry entry) {
+        if (!entry.isFile() || segments == null && binaryPolicy == BinaryPolicy.INCLUDE) return null;
+        try {
+            return Files.readAttributes(entry.getPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Segment of the previous output that can stand for this file as it is on disk, or null
+    private CombineManifest.Entry reusable(FileEntry entry, BasicFileAttributes now) {
+        if (previous == null || now == null) return null;
+        return previous.reusable(entry.getPath(), now.size(), now.lastModifiedTime().toMillis());
+    }
+
+    // Queue the copy of a reused segment; segments that follow each other in the old output are merged
+    private void reuse(FileEntry entry, CombineManifest.Entry segment) throws IOException {
+        if (runLength > 0 && runStart + runLength != segment.offset) flushReused();
+        if (runLength == 0) runStart = segment.offset;
+        segments.add(segment.movedTo(output.position() + runLength));
+        runLength += segment.length;
+        filesReused++;
+        bytesReused += segment.length;
+        if (CombineManifest.SUMMARY.equals(segment.kind)) {
+            filesBinary++;
+        } else {
+            filesWritten++;
+            bodyWritten(entry);
+        }
+    }
+
+    private void bodyWritten(FileEntry entry) {
+        if (bodiesWritten != null) bodiesWritten.add(entry);
+    }
+
+    // Line written instead of the body of a copy: where the identical content already is
+    private byte[] reference(FileEntry entry, FileEntry original) {
+        String where = fileNameOnly
+                ? entry.getPath().getParent().relativize(original.getPath()).toString()
+                : original.toFile().getAbsolutePath();
+        return ("[identical to " + where + ", content not repeated]").getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Copy the queued segments from the previous output (kernel-side, like file bodies)
+    private void flushReused() throws IOException {
+        long position = runStart;
+        long end = runStart + runLength;
+        while (position < end) {
+            long n = previousOutput.transferTo(position, end - position, output.channel());
+            if (n <= 0) throw new IOException("Previous output changed while it was being reused");
+            position += n;
+        }
+        runLength = 0;
+    }
+
+    // Add a freshly written segment to the new manifest, with the attributes the file had when it was read
+    private void record(Segment segment, String kind, long offset) throws IOException {
+        if (segments == null || segment.stat == null) return; // not recorded: written again next time
+        segments.add(new CombineManifest.Entry(segment.entry.getPath().toString(), segment.stat.size(),
+                segment.stat.lastModifiedTime().toMillis(), kind, offset, output.position() - offset));
+    }
+
+    // One file at a time: sniff, then stream the body straight from the file
+    private void combineSequential(List<FileEntry> files, Listener log) throws IOException {
+        for (FileEntry entry : files) {
+            checkCancelled();
+            BasicFileAttributes now = stat(entry);
+            CombineManifest.Entry reused = reusable(entry, now);
+            Segment segment = new Segment(entry, reused == null ? header(entry).getBytes(StandardCharsets.UTF_8) : null);
+            segment.reused = reused;
+            segment.stat = now;
+            segment.original = duplicateOf.get(entry);
+            if (reused == null && entry.isFile() && binaryPolicy != BinaryPolicy.INCLUDE) {
+                try {
+                    segment.binaryKind = sniffer.detect(entry, now);
+                } catch (IOException ex) {
+                    // unreadable: reported by the copy
+                }
+            }
+            write(segment, log);
+        }
+    }
+
+    // Readers fill an ordered window of futures; the calling thread drains it in list order, so the
+    // output is byte-identical to combineSequential
+    private void combinePipelined(List<FileEntry> files, Listener log) throws IOException {
+        ExecutorService readers = Executors.newFixedThreadPool(readerThreads, r -> {
+            Thread t = new Thread(r, "combine-reader");
+            t.setDaemon(true);
+            return t;
+        });
+        Deque<Future<Segment>> window = new ArrayDeque<>();
+        int maxInFlight = readerThreads * 4;
+        long reserved = 0;
+        int next = 0;
+        try {
+            while (next < files.size() || !window.isEmpty()) {
+                checkCancelled();
+                while (next < files.size() && window.size() < maxInFlight) {
+                    FileEntry entry = files.get(next);
+                    BasicFileAttributes now = stat(entry);
+                    CombineManifest.Entry reused = reusable(entry, now);
+                    if (reused != null) {
+                        // nothing to read: the segment comes from the previous output
+                        Segment segment = new Segment(entry, null);
+                        segment.reused = reused;
+                        window.add(CompletableFuture.completedFuture(segment));
+                        next++;
+                        continue;
+                    }
+                    long reserve = prefetchable(entry) && !duplicateOf.containsKey(entry) ? entry.getSize() : 0;
+                    if (!window.isEmpty() && reserved + reserve > MEMORY_CAP) break;
+                    reserved += reserve;
+                    window.add(readers.submit(() -> read(entry, now)));
+                    next++;
+                }
+                Segment segment = await(window.poll());
+                reserved -= segment.reserved;
+                write(segment, log);
+            }
+        } finally {
+            readers.shutdownNow();
+        }
+    }
+
+    private boolean prefetchable(FileEntry entry) {
+        return entry.isFile() && entry.getSize() > 0 && entry.getSize() <= PREFETCH_LIMIT;
+    }
+
+    // Reader side: render the header and, for small files, load the body; sniff unless binaries are included.
+    // Copies of an earlier file are not read ahead: usually only a reference to the first is written
+    private Segment read(FileEntry entry, BasicFileAttributes now) {
+        Segment segment = new Segment(entry, header(entry).getBytes(StandardCharsets.UTF_8));
+        segment.stat = now;
+        segment.original = duplicateOf.get(entry);
+        boolean sniff = entry.isFile() && binaryPolicy != BinaryPolicy.INCLUDE;
+        if (prefetchable(entry) && segment.original == null) {
+            segment.reserved = entry.getSize();
+            try {
+                segment.body = Files.readAllBytes(entry.getPath());
+                if (sniff) segment.binaryKind = sniffer.detect(entry, now, segment.body);
+            } catch (IOException ex) {
+                segment.error = ex.getMessage();
+            }
+        } else if (sniff) {
+            try {
+                segment.binaryKind = sniffer.detect(entry, now);
+            } catch (IOException ex) {
+                // unreadable: reported when the writer streams it
+            }
+        }
+        if (segment.binaryKind != null) segment.body = null;
+        return segment;
+    }
+
+    // Writer side, shared by both modes: bodies read ahead are written from memory, others streamed
+    private void write(Segment segment, Listener log) throws IOException {
+        FileEntry entry = segment.entry;
+        if (segment.reused != null) {
+            reuse(entry, segment.reused);
+            log.fileReused(entry);
+            return;
+        }
+        flushReused();
+        if (segment.binaryKind != null && binaryPolicy == BinaryPolicy.SKIP) {
+            filesBinary++;
+            log.binarySkipped(entry, segment.binaryKind);
+            return;
+        }
+        log.fileStarted(entry);
+        String path = entry.getPath().toString();
+        byte[] header = segment.header;
+
+        if (segment.binaryKind != null) {
+            // one line in place of a binary body
+            String summary = String.format("[%s, %,d bytes, content not included]", segment.binaryKind, entry.getSize());
+            byte[] line = summary.getBytes(StandardCharsets.UTF_8);
+            output.begin(path, header.length + line.length + SEPARATOR.length,
+                    lines(header) + lines(line) + lines(SEPARATOR));
+            long offset = output.position();
+            writeFully(header);
+            writeFully(line);
+            writeFully(SEPARATOR);
+            filesBinary++;
+            log.binarySkipped(entry, segment.binaryKind);
+            record(segment, CombineManifest.SUMMARY, offset);
+        } else if (!entry.isFile()) {
+            writeHeaderOnly(path, header);
+            log.fileSkipped(entry);
+        } else if (segment.error != null) {
+            writeHeaderOnly(path, header);
+            filesFailed++;
+            log.readFailed(entry, segment.error);
+        } else if (segment.original != null && bodiesWritten.contains(segment.original)) {
+            byte[] line = reference(entry, segment.original);
+            output.begin(path, header.length + line.length + SEPARATOR.length,
+                    lines(header) + lines(line) + lines(SEPARATOR));
+            writeFully(header);
+            writeFully(line);
+            writeFully(SEPARATOR);
+            filesWritten++;
+            filesDeduplicated++;
+            bytesDeduplicated += entry.getSize();
+        } else if (segment.body != null) {
+            byte[] body = segment.body;
+            long bodyLines = output.countsLines() ? lines(body) : 0;
+            long size = header.length + body.length + SEPARATOR.length;
+            long lineCount = lines(header) + bodyLines + lines(SEPARATOR);
+            if (output.fits(size, lineCount)) {
+                output.begin(path, size, lineCount);
+                long offset = output.position();
+                writeFully(header);
+                writeFully(body);
+                writeFully(SEPARATOR); // newline after file
+                record(segment, CombineManifest.TEXT, offset);
+            } else {
+                output.writeSplit(path, header, Channels.newChannel(new ByteArrayInputStream(body)),
+                        continuedHeader(entry), SEPARATOR);
+            }
+            filesWritten++;
+            bodyWritten(entry);
+        } else {
+            FileChannel source;
+            try {
+                source = FileChannel.open(entry.getPath(), StandardOpenOption.READ);
+            } catch (IOException ex) {
+                writeHeaderOnly(path, header);
+                filesFailed++;
+                log.readFailed(entry, ex.getMessage());
+                return;
+            }
+            try (source) {
+                long size = header.length + source.size() + SEPARATOR.length;
+                long lineCount = output.countsLines()
+                        ? lines(header) + ChunkedOutput.countLines(source, copyBuffer) + lines(SEPARATOR) : 0;
+                if (output.fits(size, lineCount)) {
+                    output.begin(path, size, lineCount);
+                    long offset = output.position();
+                    writeFully(header);
+                    copyBody(source, output.channel());
+                    writeFully(SEPARATOR); // newline after file
+                    record(segment, CombineManifest.TEXT, offset);
+                } else {
+                    output.writeSplit(path, header, source, continuedHeader(entry), SEPARATOR);
+                }
+                filesWritten++;
+                bodyWritten(entry);
+            } catch (IOException ex) {
+                if (cancelled) throw ex;
+                filesFailed++;
+                log.readFailed(entry, ex.getMessage());
+            }
+        }
+    }
+
+    // Header of a file that has no body in the output (not a regular file, or unreadable)
+    private void writeHeaderOnly(String path, byte[] header) throws IOException {
+        output.begin(path, header.length, lines(header));
+        writeFully(header);
+    }
+
+    // Header at the start of each further chunk of a file split across chunks
+    private byte[] continuedHeader(FileEntry entry) {
+        String h = header(entry);
+        int end = h.lastIndexOf(" **/");
+        return (h.substring(0, end) + " (continued)" + h.substring(end)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long lines(byte[] data) {
+        return ChunkedOutput.countLines(data, 0, data.length);
+    }
+
+    private static Segment await(Future<Segment> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Combine interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // Copy of the whole source with transferTo: the kernel moves it (sendfile/copy_file_range) without
+    // the heap, unless the target is the compressor. Files that report size 0 (e.g. /proc entries)
+    // are copied through the reused direct buffer instead.
+    private void copyBody(FileChannel source, WritableByteChannel target) throws IOException {
+        long size = source.size();
+        if (size == 0) {
+            copyBuffered(source, target);
+            return;
+        }
+        long position = 0;
+        while (position < size) {
+            checkCancelled();
+            long n = source.transferTo(position, Math.min(size - position, TRANSFER_SLICE), target);
+            if (n <= 0) break; // file shrank while copying
+            position += n;
+        }
+    }
+
+    private void copyBuffered(FileChannel source, WritableByteChannel target) throws IOException {
+        copyBuffer.clear();
+        while (source.read(copyBuffer) != -1) {
+            copyBuffer.flip();
+            writeFully(target, copyBuffer);
+            copyBuffer.clear();
+        }
+    }
+
+    private void writeFully(byte[] data) throws IOException {
+        writeFully(output.channel(), ByteBuffer.wrap(data));
+    }
+
+    private static void writeFully(WritableByteChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    // One file as prepared by a reader: rendered header plus the body when it was read ahead
+    private static final class Segment {
+        final FileEntry entry;
+        final byte[] header;
+        byte[] body;
+        String error;
+        String binaryKind;   // set when the sniffer rejected the content
+        CombineManifest.Entry reused; // copied from the previous output instead of read
+        FileEntry original;  // earlier file with identical content (dedupe)
+        BasicFileAttributes stat; // attributes on disk before the body was read (null unless incremental or sniffing)
+        long reserved;
+
+        Segment(FileEntry entry, byte[] header) {
+            this.entry = entry;
+            this.header = header;
+        }
+    }
+}
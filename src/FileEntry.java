@@ -0,0 +1,106 @@
+// File: FileEntry.java
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * FileEntry - immutable snapshot of one scanned path (type, size, mtime, file key).
+ * Attributes are read once while scanning, so the tree and its renderer never touch the disk again.
+ * For symbolic links the type, size and key describe the link target.
+ */
+public final class FileEntry {
+    public enum Type { DIRECTORY, FILE, OTHER }
+
+    private final Path path;
+    private final Type type;
+    private final long size;
+    private final long lastModified;
+    private final Object fileKey;
+    private final boolean symbolicLink;
+
+    public FileEntry(Path path, Type type, long size, long lastModified, Object fileKey, boolean symbolicLink) {
+        this.path = path;
+        this.type = type;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.fileKey = fileKey;
+        this.symbolicLink = symbolicLink;
+    }
+
+    // Read attributes with a single call; only symbolic links need a second read for their target.
+    // Unreadable entries and dangling links become OTHER
+    public static FileEntry read(Path path) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException | RuntimeException e) {
+            return new FileEntry(path, Type.OTHER, 0L, 0L, null, false);
+        }
+        if (!attrs.isSymbolicLink()) {
+            return fromAttributes(path, attrs, false);
+        }
+        try {
+            return fromAttributes(path, Files.readAttributes(path, BasicFileAttributes.class), true);
+        } catch (IOException | RuntimeException e) {
+            return new FileEntry(path, Type.OTHER, 0L, attrs.lastModifiedTime().toMillis(), null, true);
+        }
+    }
+
+    public static FileEntry fromAttributes(Path path, BasicFileAttributes attrs, boolean symbolicLink) {
+        Type type = attrs.isDirectory() ? Type.DIRECTORY : attrs.isRegularFile() ? Type.FILE : Type.OTHER;
+        return new FileEntry(path, type, attrs.size(), attrs.lastModifiedTime().toMillis(),
+                attrs.fileKey(), symbolicLink);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public File toFile() {
+        return path.toFile();
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public boolean isDirectory() {
+        return type == Type.DIRECTORY;
+    }
+
+    public boolean isFile() {
+        return type == Type.FILE;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    // Device+inode style key where the file system provides one (may be null)
+    public Object getFileKey() {
+        return fileKey;
+    }
+
+    public boolean isSymbolicLink() {
+        return symbolicLink;
+    }
+
+    // Display name; roots have no file name so fall back to the full path
+    public String getName() {
+        Path name = path.getFileName();
+        return name == null ? path.toString() : name.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -0,0 +1,152 @@
+// File: FileMatcher.java
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * FileMatcher - include/exclude rules for files (globs, extensions, size limits) compiled into one matcher.
+ * Each side is split by the cheapest test that answers it: extensions ("*.java") and plain
+ * names are hash lookups, the remaining globs are merged into one GlobAutomaton per subject
+ * (file name, or root-relative path for globs containing '/'). The cost per entry therefore stays
+ * about the same with hundreds of rules. Extensions compare case-insensitively, globs exactly.
+ * Folders are never filtered here; pruning whole folders is the job of the ignore rules.
+ */
+public final class FileMatcher {
+    // Accepts every file
+    public static final FileMatcher ALL = new FileMatcher(new ArrayList<>(), new ArrayList<>(), 0, Long.MAX_VALUE);
+
+    private final Rules include;   // null = everything is included
+    private final Rules exclude;   // null = nothing is excluded
+    private final long minSize;
+    private final long maxSize;
+    private final String description;
+
+    public FileMatcher(List<String> includes, List<String> excludes, long minSize, long maxSize) {
+        this.include = includes.isEmpty() ? null : new Rules(includes);
+        this.exclude = excludes.isEmpty() ? null : new Rules(excludes);
+        this.minSize = Math.max(0, minSize);
+        this.maxSize = maxSize;
+        StringBuilder sb = new StringBuilder();
+        if (!includes.isEmpty()) sb.append("include ").append(String.join(", ", includes));
+        if (!excludes.isEmpty()) sb.append(sb.length() > 0 ? "; " : "").append("exclude ").append(String.join(", ", excludes));
+        if (minSize > 0) sb.append(sb.length() > 0 ? "; " : "").append("min ").append(minSize).append(" bytes");
+        if (maxSize < Long.MAX_VALUE) sb.append(sb.length() > 0 ? "; " : "").append("max ").append(maxSize).append(" bytes");
+        this.description = sb.length() == 0 ? "all files" : sb.toString();
+    }
+
+    // Parse a compact spec: comma/space separated globs, "!glob" to exclude, "<10M" / ">1K" size limits
+    public static FileMatcher parse(String spec) {
+        List<String> includes = new ArrayList<>();
+        List<String> excludes = new ArrayList<>();
+        long min = 0;
+        long max = Long.MAX_VALUE;
+        for (String token : spec.split("[,\\s]+")) {
+            if (token.isEmpty()) continue;
+            if (token.startsWith("<")) {
+                max = parseSize(token.substring(1)) - 1;
+            } else if (token.startsWith(">")) {
+                min = parseSize(token.substring(1)) + 1;
+            } else if (token.startsWith("!")) {
+                if (token.length() > 1) excludes.add(token.substring(1));
+            } else {
+                includes.add(token);
+            }
+        }
+        return new FileMatcher(includes, excludes, min, max);
+    }
+
+    // "512", "64K", "10M", "1G" (binary units); IllegalArgumentException when malformed
+    public static long parseSize(String text) {
+        String t = text.trim().toUpperCase(Locale.ROOT);
+        if (t.endsWith("B")) t = t.substring(0, t.length() - 1);
+        long unit = 1;
+        if (t.endsWith("K")) unit = 1024L;
+        else if (t.endsWith("M")) unit = 1024L * 1024;
+        else if (t.endsWith("G")) unit = 1024L * 1024 * 1024;
+        if (unit > 1) t = t.substring(0, t.length() - 1);
+        try {
+            return (long) (Double.parseDouble(t) * unit);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid size: " + text);
+        }
+    }
+
+    public boolean acceptsAll() {
+        return include == null && exclude == null && minSize == 0 && maxSize == Long.MAX_VALUE;
+    }
+
+    // True if a file below root passes the filter; folders and other non-files always pass
+    public boolean accepts(Path root, FileEntry entry) {
+        if (!entry.isFile() || acceptsAll()) return true;
+        long size = entry.getSize();
+        if (size < minSize || size > maxSize) return false;
+        String name = entry.getName();
+        if (include != null && !include.matches(root, entry.getPath(), name)) return false;
+        return exclude == null || !exclude.matches(root, entry.getPath(), name);
+    }
+
+    public static String relativePath(Path root, Path path) {
+        String s = path.startsWith(root) ? root.relativize(path).toString() : path.toString();
+        String sep = path.getFileSystem().getSeparator();
+        return sep.equals("/") ? s : s.replace(sep, "/");
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+
+    // One side (include or exclude) of the filter
+    private static final class Rules {
+        private final Set<String> extensions = new HashSet<>(); // lower case, without the dot
+        private final Set<String> names = new HashSet<>();
+        private final GlobAutomaton nameGlobs;                  // null when there are none
+        private final GlobAutomaton pathGlobs;
+
+        Rules(List<String> patterns) {
+            List<String> nameList = new ArrayList<>();
+            List<String> pathList = new ArrayList<>();
+            for (String p : patterns) {
+                if (p.startsWith("/")) p = p.substring(1);
+                if (p.isEmpty()) continue;
+                if (p.indexOf('/') >= 0) {
+                    pathList.add(p);
+                } else if (isExtension(p)) {
+                    extensions.add(p.substring(2).toLowerCase(Locale.ROOT));
+                } else if (!hasWildcard(p)) {
+                    names.add(p);
+                } else {
+                    nameList.add(p);
+                }
+            }
+            nameGlobs = nameList.isEmpty() ? null : new GlobAutomaton(nameList);
+            pathGlobs = pathList.isEmpty() ? null : new GlobAutomaton(pathList);
+        }
+
+        // "*.ext" with a plain single extension
+        private static boolean isExtension(String p) {
+            if (!p.startsWith("*.")) return false;
+            String ext = p.substring(2);
+            return !ext.isEmpty() && ext.indexOf('.') < 0 && !hasWildcard(ext);
+        }
+
+        private static boolean hasWildcard(String p) {
+            return p.indexOf('*') >= 0 || p.indexOf('?') >= 0 || p.indexOf('[') >= 0 || p.indexOf('\\') >= 0;
+        }
+
+        // The root-relative path is only built when a path glob needs it
+        boolean matches(Path root, Path path, String name) {
+            if (!extensions.isEmpty()) {
+                int dot = name.lastIndexOf('.');
+                if (dot >= 0 && extensions.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT))) return true;
+            }
+            if (names.contains(name)) return true;
+            if (nameGlobs != null && nameGlobs.matches(name)) return true;
+            return pathGlobs != null && pathGlobs.matches(relativePath(root, path));
+        }
+    }
+}
@@ -0,0 +1,217 @@
+// File: FileTreeModel.java
+
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FileTreeModel - TreeModel view over a FileTreeStore.
+ * Tree nodes are Integer ids into the store; an unlisted lazy folder shows one LOADING_PLACEHOLDER child.
+ * Without a store the model shows a single message node.
+ * A filtered view (quick filter) shows only some entries and the folders above them; it does not fire
+ * events itself: the full model does, and the view is built anew.
+ */
+public class FileTreeModel implements TreeModel {
+    private final FileTreeStore store;
+    private final Object messageRoot;
+    private final Map<Integer, int[]> shown;     // filtered view: visible children of the folders above matches
+    private final EventListenerList listeners = new EventListenerList();
+
+    public FileTreeModel(FileTreeStore store) {
+        this.store = store;
+        this.messageRoot = null;
+        this.shown = null;
+    }
+
+    // Filtered view of store: the matches (ascending ids), with everything under a matched folder,
+    // and the folders above them with just the children that lead to a match
+    public FileTreeModel(FileTreeStore store, int[] matches) {
+        this.store = store;
+        this.messageRoot = null;
+        BitSet matched = new BitSet(store.size());
+        for (int id : matches) matched.set(id);
+        BitSet reached = new BitSet(store.size());
+        Map<Integer, List<Integer>> paths = new HashMap<>();
+        paths.put(0, new ArrayList<>());
+        for (int id : matches) {
+            for (int c = id, p = store.getParent(c); p >= 0 && !reached.get(c) && !matched.get(p); c = p, p = store.getParent(c)) {
+                reached.set(c);
+                paths.computeIfAbsent(p, k -> new ArrayList<>()).add(c);
+            }
+        }
+        shown = new HashMap<>(paths.size() * 2);
+        for (Map.Entry<Integer, List<Integer>> e : paths.entrySet()) {
+            int folder = e.getKey();
+            int[] children = e.getValue().stream().mapToInt(Integer::intValue).toArray();
+            int[] list = store.getChildList(folder);
+            if (list == null) {
+                Arrays.sort(children); // a block holds the children in display order
+            } else {
+                int n = 0;
+                for (int c : list) {
+                    if (reached.get(c)) children[n++] = c;
+                }
+            }
+            shown.put(folder, children);
+        }
+    }
+
+    // Placeholder model with a single text node (e.g. "No folder selected")
+    public FileTreeModel(String message) {
+        this.store = null;
+        this.messageRoot = message;
+        this.shown = null;
+    }
+
+    public FileTreeStore getStore() {
+        return store;
+    }
+
+    public boolean isFiltered() {
+        return shown != null;
+    }
+
+    // Folders a filtered view shows in part: the ones to expand to bring every match into view
+    public int[] getFilteredFolders() {
+        return shown == null ? new int[0] : shown.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    // Children of id in a filtered view, or null when all of them are shown
+    private int[] shownChildren(int id) {
+        return shown == null ? null : shown.get(id);
+    }
+
+    @Override
+    public Object getRoot() {
+        return store == null ? messageRoot : Integer.valueOf(0);
+    }
+
+    @Override
+    public Object getChild(Object parent, int index) {
+        int id = (Integer) parent;
+        int[] only = shownChildren(id);
+        if (only != null) return only[index];
+        if (store.isUnlisted(id)) return JCheckBoxTree.LOADING_PLACEHOLDER;
+        return store.getChild(id, index);
+    }
+
+    @Override
+    public int getChildCount(Object parent) {
+        if (!(parent instanceof Integer)) return 0;
+        int id = (Integer) parent;
+        int[] only = shownChildren(id);
+        if (only != null) return only.length;
+        return store.isUnlisted(id) ? 1 : store.getChildCount(id);
+    }
+
+    @Override
+    public boolean isLeaf(Object node) {
+        return getChildCount(node) == 0;
+    }
+
+    @Override
+    public void valueForPathChanged(TreePath path, Object newValue) {
+        // names come from the file system; editing is not supported
+    }
+
+    @Override
+    public int getIndexOfChild(Object parent, Object child) {
+        if (!(parent instanceof Integer) || !(child instanceof Integer)) return -1;
+        int[] only = shownChildren((Integer) parent);
+        if (only != null) {
+            for (int i = 0; i < only.length; i++) {
+                if (only[i] == (Integer) child) return i;
+            }
+            return -1;
+        }
+        return store.indexOfChild((Integer) parent, (Integer) child);
+    }
+
+    // Path of ids from the root down to id
+    public TreePath getTreePath(int id) {
+        int depth = 0;
+        for (int p = id; p >= 0; p = store.getParent(p)) depth++;
+        Object[] nodes = new Object[depth];
+        for (int p = id, i = depth - 1; p >= 0; p = store.getParent(p), i--) nodes[i] = p;
+        return new TreePath(nodes);
+    }
+
+    // Notify listeners that the children of id were replaced (e.g. after lazy listing)
+    public void fireTreeStructureChanged(int id) {
+        TreeModelEvent event = new TreeModelEvent(this, getTreePath(id));
+        for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) {
+            l.treeStructureChanged(event);
+        }
+    }
+
+    // Notify listeners that an unlisted folder got its children: the placeholder row goes, the children come
+    public void fireChildrenListed(int id) {
+        fireTreeNodesRemoved(id, new int[]{0}, new Object[]{JCheckBoxTree.LOADING_PLACEHOLDER});
+        int count = store.getChildCount(id);
+        if (count <= 0) return;
+        int[] indices = new int[count];
+        Object[] children = new Object[count];
+        for (int i = 0; i < count; i++) {
+            indices[i] = i;
+            children[i] = store.getChild(id, i);
+        }
+        fireTreeNodesInserted(id, indices, children);
+    }
+
+    // Notify listeners of children removed from id (indices as they were before the removal)
+    public void fireTreeNodesRemoved(int id, int[] indices, Object[] children) {
+        TreeModelEvent event = new TreeModelEvent(this, getTreePath(id), indices, children);
+        for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) {
+            l.treeNodesRemoved(event);
+        }
+    }
+
+    // Notify listeners of children inserted under id (indices in the new order)
+    public void fireTreeNodesInserted(int id, int[] indices, Object[] children) {
+        TreeModelEvent event = new TreeModelEvent(this, getTreePath(id), indices, children);
+        for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) {
+            l.treeNodesInserted(event);
+        }
+    }
+
+    // Notify listeners that children of id changed in place (size, check state), so only their rows repaint
+    public void fireTreeNodesChanged(int id, int[] indices, Object[] children) {
+        TreeModelEvent event = new TreeModelEvent(this, getTreePath(id), indices, children);
+        for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) {
+            l.treeNodesChanged(event);
+        }
+    }
+
+    // Repaint the row of id and of every folder above it (tri-state boxes after a change below them)
+    public void fireNodeAndAncestorsChanged(int id) {
+        for (int c = id; c >= 0; c = store.getParent(c)) {
+            int p = store.getParent(c);
+            if (p < 0) {
+                TreeModelEvent event = new TreeModelEvent(this, getTreePath(c), null, null);
+                for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) {
+                    l.treeNodesChanged(event);
+                }
+            } else {
+                fireTreeNodesChanged(p, new int[]{store.indexOfChild(p, c)}, new Object[]{c});
+            }
+        }
+    }
+
+    @Override
+    public void addTreeModelListener(TreeModelListener l) {
+        listeners.add(TreeModelListener.class, l);
+    }
+
+    @Override
+    public void removeTreeModelListener(TreeModelListener l) {
+        listeners.remove(TreeModelListener.class, l);
+    }
+}
@@ -0,0 +1,638 @@
+// File: FileTreeStore.java
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * FileTreeStore - compact struct-of-arrays storage for the scanned tree.
+ * Every entry is a dense int id (root = 0); the children of a folder occupy one contiguous id block,
+ * names live in a shared UTF-8 byte pool and sizes/mtimes in long arrays, so no per-entry objects exist.
+ * Mutated only by the scanner before publication or on the EDT (lazy expansion, live refresh).
+ * A folder refreshed in place keeps its surviving children's ids, so its children become an explicit
+ * id list instead of a block; compact() turns such a tree back into contiguous blocks.
+ * The arrays can be written to and read back from a snapshot file as raw blocks (see ScanSnapshot).
+ */
+public class FileTreeStore {
+    // flag bits
+    public static final int DIRECTORY = 1;
+    public static final int FILE = 2;
+    public static final int LINK = 4;      // symbolic link (type/size describe the target)
+    public static final int LOOP = 8;      // folder already open on its own branch, not traversed
+    public static final int DESCEND = 16;  // folder whose children may be listed under the link policy
+
+    // childCount value of a folder whose children have not been listed yet (lazy mode)
+    public static final int UNLISTED = -1;
+
+    private final Path rootPath;
+    private int count;
+    private int[] parent;
+    private int[] firstChild;
+    private int[] childCount;
+    private byte[] flags;
+    private int[] nameOffset;
+    private int[] nameLength;
+    private long[] size;
+    private long[] lastModified;
+    private int[] leafCount;   // files below a node (a file counts itself, an unlisted folder counts as one)
+    private long[] leafBytes;  // bytes of the files below a node
+    private int unlistedTotal; // unlisted folders in the whole tree
+    private byte[] namePool;
+    private int namePoolSize;
+    private int[] previousId;  // id of the same entry in the store a rescan started from (null if none)
+    private List<int[]> childLists; // explicit children of refreshed folders; firstChild = -1 - list index
+
+    // Create a store holding only the root entry
+    public FileTreeStore(FileEntry root, boolean descend) {
+        this.rootPath = root.getPath().toAbsolutePath();
+        int capacity = 1024;
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        childCount = new int[capacity];
+        flags = new byte[capacity];
+        nameOffset = new int[capacity];
+        nameLength = new int[capacity];
+        size = new long[capacity];
+        lastModified = new long[capacity];
+        leafCount = new int[capacity];
+        leafBytes = new long[capacity];
+        namePool = new byte[capacity * 16];
+
+        // the root shows its full path
+        Block rootBlock = new Block(1);
+        rootBlock.add(root, rootPath.toString(), descend, false);
+        append(-1, rootBlock);
+    }
+
+    // Store read back from a snapshot; arrays are exactly count long
+    private FileTreeStore(Path rootPath, int count) {
+        this.rootPath = rootPath;
+        this.count = count;
+    }
+
+    public Path getRootPath() {
+        return rootPath;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getParent(int id) {
+        return parent[id];
+    }
+
+    // First id of the child block, or a negative value when the children are an explicit list
+    public int getFirstChild(int id) {
+        return firstChild[id];
+    }
+
+    // Explicit children of a folder refreshed in place, or null when they are one contiguous block
+    public int[] getChildList(int id) {
+        int first = firstChild[id];
+        return first < 0 ? childLists.get(-1 - first) : null;
+    }
+
+    // True once any folder was refreshed in place (see compact)
+    public boolean hasChildLists() {
+        return childLists != null;
+    }
+
+    // Number of listed children, or UNLISTED for a lazy folder that was never expanded
+    public int getChildCount(int id) {
+        return childCount[id];
+    }
+
+    public int getChild(int id, int index) {
+        int first = firstChild[id];
+        return first >= 0 ? first + index : childLists.get(-1 - first)[index];
+    }
+
+    // Position of child under id, or -1 if it is not (or no longer) one of its children
+    public int indexOfChild(int id, int child) {
+        if (parent[child] != id || childCount[id] <= 0) return -1;
+        int first = firstChild[id];
+        if (first >= 0) return child >= first && child < first + childCount[id] ? child - first : -1;
+        int[] list = childLists.get(-1 - first);
+        for (int i = 0; i < list.length; i++) {
+            if (list[i] == child) return i;
+        }
+        return -1;
+    }
+
+    // True if the entry is still reachable from the root (not dropped by a live refresh)
+    public boolean isAttached(int id) {
+        for (int c = id; parent[c] >= 0; c = parent[c]) {
+            if (indexOfChild(parent[c], c) < 0) return false;
+        }
+        return true;
+    }
+
+    public boolean isDirectory(int id) {
+        return (flags[id] & DIRECTORY) != 0;
+    }
+
+    public boolean isFile(int id) {
+        return (flags[id] & FILE) != 0;
+    }
+
+    public boolean isLink(int id) {
+        return (flags[id] & LINK) != 0;
+    }
+
+    public boolean isLoop(int id) {
+        return (flags[id] & LOOP) != 0;
+    }
+
+    // Folder whose children are listed under the link policy (not a loop)
+    public boolean isExpandable(int id) {
+        return (flags[id] & DESCEND) != 0 && (flags[id] & LOOP) == 0;
+    }
+
+    public boolean isUnlisted(int id) {
+        return childCount[id] == UNLISTED;
+    }
+
+    public long getSize(int id) {
+        return size[id];
+    }
+
+    public long getLastModified(int id) {
+        return lastModified[id];
+    }
+
+    // Files below id; a file counts itself and an unlisted folder counts as one until it is listed
+    public int getLeafCount(int id) {
+        return leafCount[id];
+    }
+
+    public long getLeafBytes(int id) {
+        return leafBytes[id];
+    }
+
+    // Number of unlisted (lazy, never expanded) folders in the tree
+    public int getUnlistedCount() {
+        return unlistedTotal;
+    }
+
+    public String getName(int id) {
+        return new String(namePool, nameOffset[id], nameLength[id], StandardCharsets.UTF_8);
+    }
+
+    // UTF-8 length of a name, and a copy of its bytes into dst at offset (e.g. for an index)
+    public int getNameLength(int id) {
+        return nameLength[id];
+    }
+
+    public void copyName(int id, byte[] dst, int offset) {
+        System.arraycopy(namePool, nameOffset[id], dst, offset, nameLength[id]);
+    }
+
+    // Compare a name without decoding it
+    public boolean nameEquals(int id, byte[] utf8) {
+        if (nameLength[id] != utf8.length) return false;
+        int offset = nameOffset[id];
+        for (int i = 0; i < utf8.length; i++) {
+            if (namePool[offset + i] != utf8[i]) return false;
+        }
+        return true;
+    }
+
+    // Absolute path, rebuilt from the parent chain
+    public Path getPath(int id) {
+        int depth = 0;
+        for (int p = id; p > 0; p = parent[p]) depth++;
+        int[] chain = new int[depth];
+        for (int p = id, i = depth - 1; p > 0; p = parent[p], i--) chain[i] = p;
+        Path path = rootPath;
+        for (int c : chain) path = path.resolve(getName(c));
+        return path;
+    }
+
+    // Entry view of a node (file key is not kept in the store)
+    public FileEntry getEntry(int id) {
+        FileEntry.Type type = isDirectory(id) ? FileEntry.Type.DIRECTORY
+                : isFile(id) ? FileEntry.Type.FILE : FileEntry.Type.OTHER;
+        return new FileEntry(getPath(id), type, size[id], lastModified[id], null, isLink(id));
+    }
+
+    // Append a listed block as the children of parentId; returns the id of the first child.
+    // Listed sub-blocks are appended recursively, so a whole scanned tree goes in with one call.
+    // Leaf totals of the ancestors are adjusted in O(depth)
+    public int append(int parentId, Block block) {
+        int oldCount = parentId >= 0 ? leafCount[parentId] : 0;
+        long oldBytes = parentId >= 0 ? leafBytes[parentId] : 0L;
+        if (parentId >= 0 && childCount[parentId] == UNLISTED) unlistedTotal--;
+        int start = appendBlock(parentId, block, true);
+        if (parentId >= 0) {
+            int deltaCount = leafCount[parentId] - oldCount;
+            long deltaBytes = leafBytes[parentId] - oldBytes;
+            for (int p = parent[parentId]; p >= 0; p = parent[p]) {
+                leafCount[p] += deltaCount;
+                leafBytes[p] += deltaBytes;
+            }
+        }
+        return start;
+    }
+
+    // Append entries whose parent is dir without making them its children yet (live refresh);
+    // setChildren links them in. Returns the id of the first entry
+    public int appendDetached(int dir, Block block) {
+        return appendBlock(dir, block, false);
+    }
+
+    private int appendBlock(int parentId, Block block, boolean attach) {
+        ensureCapacity(count + block.count);
+        int start = count;
+        for (int i = 0; i < block.count; i++) {
+            int id = start + i;
+            parent[id] = parentId;
+            firstChild[id] = 0;
+            flags[id] = block.flags[i];
+            boolean expandable = (block.flags[i] & DESCEND) != 0 && (block.flags[i] & LOOP) == 0;
+            childCount[id] = expandable ? UNLISTED : 0;
+            boolean file = (block.flags[i] & FILE) != 0;
+            leafCount[id] = file || expandable ? 1 : 0;
+            leafBytes[id] = file ? block.sizes[i] : 0L;
+            if (expandable) unlistedTotal++;
+            if (block.sourceIds != null) {
+                if (previousId == null) {
+                    previousId = new int[parent.length];
+                    Arrays.fill(previousId, -1);
+                }
+                previousId[id] = block.sourceIds[i];
+            }
+            size[id] = block.sizes[i];
+            lastModified[id] = block.mtimes[i];
+            int len = block.nameEnd[i] - block.nameStart[i];
+            ensureNameCapacity(namePoolSize + len);
+            System.arraycopy(block.names.bytes, block.nameStart[i], namePool, namePoolSize, len);
+            nameOffset[id] = namePoolSize;
+            nameLength[id] = len;
+            namePoolSize += len;
+        }
+        count += block.count;
+        if (attach && parentId >= 0) {
+            firstChild[parentId] = start;
+            childCount[parentId] = block.count;
+        }
+        if (block.subBlocks != null) {
+            for (int i = 0; i < block.count; i++) {
+                int id = start + i;
+                if (i < block.subBlocks.length && block.subBlocks[i] != null) {
+                    unlistedTotal--;
+                    appendBlock(id, block.subBlocks[i], true);
+                } else if (childCount[id] == UNLISTED) {
+                    childCount[id] = 0; // full scan could not list it
+                    leafCount[id] = 0;
+                    unlistedTotal--;
+                }
+            }
+        }
+        if (attach && parentId >= 0) {
+            int total = 0;
+            long bytes = 0L;
+            for (int id = start; id < start + block.count; id++) {
+                total += leafCount[id];
+                bytes += leafBytes[id];
+            }
+            leafCount[parentId] = total;
+            leafBytes[parentId] = bytes;
+        }
+        return start;
+    }
+
+    // Make 'children' (existing ids or ids from appendDetached, in display order) the children of a
+    // listed folder. Entries that are left out are dropped with their subtrees; the folder's ids are
+    // kept, so the tree only sees inserts and removals. Leaf totals of the ancestors are adjusted
+    // in O(depth). Returns the dropped ids
+    public int[] setChildren(int dir, int[] children) {
+        int oldCount = leafCount[dir];
+        long oldBytes = leafBytes[dir];
+        int[] sorted = children.clone();
+        Arrays.sort(sorted);
+        int before = Math.max(0, childCount[dir]);
+        int[] removed = new int[before];
+        int dropped = 0;
+        for (int i = 0; i < before; i++) {
+            int c = getChild(dir, i);
+            if (Arrays.binarySearch(sorted, c) < 0) {
+                removed[dropped++] = c;
+                unlistedTotal -= countUnlisted(c);
+            }
+        }
+        if (childCount[dir] == UNLISTED) unlistedTotal--;
+
+        if (firstChild[dir] < 0) {
+            childLists.set(-1 - firstChild[dir], children);
+        } else {
+            if (childLists == null) childLists = new ArrayList<>();
+            childLists.add(children);
+            firstChild[dir] = -childLists.size();
+        }
+        childCount[dir] = children.length;
+        int total = 0;
+        long bytes = 0L;
+        for (int c : children) {
+            total += leafCount[c];
+            bytes += leafBytes[c];
+        }
+        leafCount[dir] = total;
+        leafBytes[dir] = bytes;
+        for (int p = parent[dir]; p >= 0; p = parent[p]) {
+            leafCount[p] += total - oldCount;
+            leafBytes[p] += bytes - oldBytes;
+        }
+        return Arrays.copyOf(removed, dropped);
+    }
+
+    // New size and modification time of an entry (live refresh); a file's size change reaches its ancestors
+    public void setAttributes(int id, long newSize, long newModified) {
+        if (isFile(id)) {
+            long delta = newSize - size[id];
+            for (int p = id; p >= 0; p = parent[p]) leafBytes[p] += delta;
+        }
+        size[id] = newSize;
+        lastModified[id] = newModified;
+    }
+
+    // Unlisted folders in the subtree of id
+    private int countUnlisted(int id) {
+        int found = 0;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = id;
+        while (top > 0) {
+            int node = stack[--top];
+            if (childCount[node] == UNLISTED) found++;
+            for (int i = 0; i < childCount[node]; i++) {
+                if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+                stack[top++] = getChild(node, i);
+            }
+        }
+        return found;
+    }
+
+    // Copy of a fully listed tree with every folder's children in one block again and dropped entries
+    // left behind; entries of the copy remember their id here (getPreviousId)
+    public FileTreeStore compact() {
+        FileTreeStore out = new FileTreeStore(getEntry(0), isExpandable(0));
+        if (childCount[0] > 0) {
+            out.append(0, copyChildren(0));
+            out.previousId[0] = 0;
+        }
+        return out;
+    }
+
+    private Block copyChildren(int dir) {
+        int n = childCount[dir];
+        Block block = new Block(n);
+        for (int i = 0; i < n; i++) {
+            block.addFrom(this, getChild(dir, i));
+        }
+        for (int i = 0; i < n; i++) {
+            int c = getChild(dir, i);
+            if (isExpandable(c) && childCount[c] >= 0) block.setSubBlock(i, copyChildren(c));
+        }
+        return block;
+    }
+
+    // Id of the same path in the store this one was rescanned from, or -1 for a new entry
+    public int getPreviousId(int id) {
+        return previousId == null ? -1 : previousId[id];
+    }
+
+    // Drop the rescan mapping once check state and expansion were carried over
+    public void clearPreviousIds() {
+        previousId = null;
+    }
+
+    // Write the arrays as raw blocks in native byte order
+    public void write(FileChannel out) throws IOException {
+        if (childLists != null) throw new IllegalStateException("Store has child lists; write a compact() copy");
+        byte[] root = rootPath.toString().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer head = ByteBuffer.allocate(16 + root.length).order(ByteOrder.nativeOrder());
+        head.putInt(count).putInt(namePoolSize).putInt(unlistedTotal).putInt(root.length).put(root).flip();
+        writeFully(out, head);
+
+        ByteBuffer buf = ByteBuffer.allocateDirect(count * 4 * 6 + count * 8 * 3 + count + namePoolSize)
+                .order(ByteOrder.nativeOrder());
+        for (int[] a : new int[][]{parent, firstChild, childCount, nameOffset, nameLength, leafCount}) {
+            buf.asIntBuffer().put(a, 0, count);
+            buf.position(buf.position() + count * 4);
+        }
+        for (long[] a : new long[][]{size, lastModified, leafBytes}) {
+            buf.asLongBuffer().put(a, 0, count);
+            buf.position(buf.position() + count * 8);
+        }
+        buf.put(flags, 0, count).put(namePool, 0, namePoolSize).flip();
+        writeFully(out, buf);
+    }
+
+    // Read a store written by write(); buf is positioned after it on return
+    public static FileTreeStore read(ByteBuffer buf) {
+        int count = buf.getInt();
+        int poolSize = buf.getInt();
+        int unlisted = buf.getInt();
+        byte[] root = new byte[buf.getInt()];
+        buf.get(root);
+        FileTreeStore store = new FileTreeStore(Paths.get(new String(root, StandardCharsets.UTF_8)), count);
+        store.unlistedTotal = unlisted;
+        store.parent = readInts(buf, count);
+        store.firstChild = readInts(buf, count);
+        store.childCount = readInts(buf, count);
+        store.nameOffset = readInts(buf, count);
+        store.nameLength = readInts(buf, count);
+        store.leafCount = readInts(buf, count);
+        store.size = readLongs(buf, count);
+        store.lastModified = readLongs(buf, count);
+        store.leafBytes = readLongs(buf, count);
+        store.flags = new byte[Math.max(count, 16)];
+        buf.get(store.flags, 0, count);
+        store.namePool = new byte[Math.max(poolSize, 16)];
+        buf.get(store.namePool, 0, poolSize);
+        store.namePoolSize = poolSize;
+        return store;
+    }
+
+    private static int[] readInts(ByteBuffer buf, int n) {
+        int[] a = new int[Math.max(n, 16)];
+        buf.asIntBuffer().get(a, 0, n);
+        buf.position(buf.position() + n * 4);
+        return a;
+    }
+
+    private static long[] readLongs(ByteBuffer buf, int n) {
+        long[] a = new long[Math.max(n, 16)];
+        buf.asLongBuffer().get(a, 0, n);
+        buf.position(buf.position() + n * 8);
+        return a;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) out.write(buf);
+    }
+
+    // Approximate heap used by the arrays, for status reporting
+    public long estimateBytes() {
+        return (long) parent.length * (4 + 4 + 4 + 1 + 4 + 4 + 8 + 8 + 4 + 8) + namePool.length;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= parent.length) return;
+        int capacity = Math.max(needed, parent.length + (parent.length >> 1));
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        childCount = Arrays.copyOf(childCount, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        nameOffset = Arrays.copyOf(nameOffset, capacity);
+        nameLength = Arrays.copyOf(nameLength, capacity);
+        size = Arrays.copyOf(size, capacity);
+        lastModified = Arrays.copyOf(lastModified, capacity);
+        leafCount = Arrays.copyOf(leafCount, capacity);
+        leafBytes = Arrays.copyOf(leafBytes, capacity);
+        if (previousId != null) {
+            int old = previousId.length;
+            previousId = Arrays.copyOf(previousId, capacity);
+            Arrays.fill(previousId, old, capacity, -1);
+        }
+    }
+
+    private void ensureNameCapacity(int needed) {
+        if (needed <= namePool.length) return;
+        namePool = Arrays.copyOf(namePool, Math.max(needed, namePool.length + (namePool.length >> 1)));
+    }
+
+    /**
+     * Block - the sorted children of one folder in compact form, built off the EDT by the scanner
+     * (or the lazy loader) and appended to the store in one step.
+     */
+    public static final class Block {
+        private int count;
+        private byte[] flags;
+        private long[] sizes;
+        private long[] mtimes;
+        private int[] nameStart;
+        private int[] nameEnd;
+        private final GrowableBytes names = new GrowableBytes();
+        private Block[] subBlocks;
+        private int[] sourceIds;   // rescans: id of each entry in the previous store, -1 for new ones
+
+        public Block(int capacity) {
+            capacity = Math.max(1, capacity);
+            flags = new byte[capacity];
+            sizes = new long[capacity];
+            mtimes = new long[capacity];
+            nameStart = new int[capacity];
+            nameEnd = new int[capacity];
+        }
+
+        // Build a block from already sorted entries
+        public static Block of(List<FileEntry> entries, boolean[] descend) {
+            Block block = new Block(entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                block.add(entries.get(i), descend[i], false);
+            }
+            return block;
+        }
+
+        public int add(FileEntry entry, boolean descend, boolean loop) {
+            return add(entry, entry.getName(), descend, loop);
+        }
+
+        private int add(FileEntry entry, String name, boolean descend, boolean loop) {
+            grow();
+            int f = (entry.isDirectory() ? DIRECTORY : 0) | (entry.isFile() ? FILE : 0)
+                    | (entry.isSymbolicLink() ? LINK : 0) | (descend ? DESCEND : 0) | (loop ? LOOP : 0);
+            flags[count] = (byte) f;
+            sizes[count] = entry.getSize();
+            mtimes[count] = entry.getLastModified();
+            nameStart[count] = names.size;
+            names.append(name.getBytes(StandardCharsets.UTF_8));
+            nameEnd[count] = names.size;
+            return count++;
+        }
+
+        // Copy an entry of another store as is (rescan of an unchanged folder); no FileEntry is built
+        public int addFrom(FileTreeStore source, int id) {
+            grow();
+            flags[count] = source.flags[id];
+            sizes[count] = source.size[id];
+            mtimes[count] = source.lastModified[id];
+            nameStart[count] = names.size;
+            names.append(source.namePool, source.nameOffset[id], source.nameLength[id]);
+            nameEnd[count] = names.size;
+            setSourceId(count, id);
+            return count++;
+        }
+
+        // New size and mtime for entry 'index' (a file changed in place: its folder's mtime did not move)
+        public void setAttributes(int index, long size, long lastModified) {
+            sizes[index] = size;
+            mtimes[index] = lastModified;
+        }
+
+        // Record which entry of the previous store entry 'index' corresponds to
+        public void setSourceId(int index, int previousId) {
+            if (sourceIds == null) {
+                sourceIds = new int[flags.length];
+                Arrays.fill(sourceIds, -1);
+            }
+            sourceIds[index] = previousId;
+        }
+
+        private void grow() {
+            if (count < flags.length) return;
+            int capacity = count * 2;
+            flags = Arrays.copyOf(flags, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            mtimes = Arrays.copyOf(mtimes, capacity);
+            nameStart = Arrays.copyOf(nameStart, capacity);
+            nameEnd = Arrays.copyOf(nameEnd, capacity);
+            if (sourceIds != null) {
+                sourceIds = Arrays.copyOf(sourceIds, capacity);
+                Arrays.fill(sourceIds, count, capacity, -1);
+            }
+        }
+
+        public int size() {
+            return count;
+        }
+
+        // Mark a child folder as already open on its branch (not traversed)
+        public void markLoop(int index) {
+            flags[index] |= LOOP;
+        }
+
+        // Attach the listed children of child folder 'index' (full scan)
+        public void setSubBlock(int index, Block sub) {
+            if (subBlocks == null) subBlocks = new Block[count];
+            subBlocks[index] = sub;
+        }
+    }
+
+    // Minimal growable byte buffer for block name pools
+    private static final class GrowableBytes {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        void append(byte[] b) {
+            append(b, 0, b.length);
+        }
+
+        void append(byte[] b, int offset, int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + length, bytes.length * 2));
+            }
+            System.arraycopy(b, offset, bytes, size, length);
+            size += length;
+        }
+    }
+}
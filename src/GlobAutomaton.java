@@ -0,0 +1,214 @@
+// File: GlobAutomaton.java
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * GlobAutomaton - many glob patterns merged into one automaton; a match reads each character once.
+ * The patterns form a single position NFA that is turned into a DFA lazily: each set of NFA positions
+ * reached is interned as one state, and its transitions are cached as they are first taken.
+ * Once warm, the cost per character does not depend on how many patterns there are.
+ * Glob syntax: '*' and '?' do not cross '/', "**" does, and "**" followed by '/' matches zero or more
+ * folders; [abc], [a-z] and [!a-z] are character classes and '\' escapes the next character.
+ * Safe for concurrent use; the state cache is bounded and misses beyond it are computed uncached.
+ */
+public final class GlobAutomaton {
+    private static final byte LITERAL = 0;
+    private static final byte ANY = 1;          // ?
+    private static final byte CLASS = 2;        // [...]
+    private static final byte STAR = 3;         // *  (within one segment)
+    private static final byte DEEP_STAR = 4;    // ** (across segments)
+    private static final byte DEEP_FOLDERS = 5; // **/ (zero or more whole folders)
+    private static final byte END = 6;          // accepting position of a pattern
+
+    private static final int MAX_STATES = 4096;
+
+    private final byte[] kind;
+    private final char[] literal;
+    private final char[][] ranges;     // CLASS: pairs of inclusive bounds
+    private final boolean[] negated;   // CLASS: [!...]
+    private final BitSet accepting = new BitSet();
+    private final State start;
+    private final ConcurrentHashMap<BitSet, State> states = new ConcurrentHashMap<>();
+
+    public GlobAutomaton(List<String> globs) {
+        int capacity = 0;
+        for (String g : globs) capacity += g.length() + 1;
+        kind = new byte[capacity];
+        literal = new char[capacity];
+        ranges = new char[capacity][];
+        negated = new boolean[capacity];
+
+        BitSet initial = new BitSet();
+        int pos = 0;
+        for (String glob : globs) {
+            initial.set(pos);
+            pos = compile(glob, pos);
+            kind[pos] = END;
+            accepting.set(pos);
+            pos++;
+        }
+        start = intern(closure(initial, (BitSet) initial.clone()));
+    }
+
+    // True if the whole text matches at least one pattern
+    public boolean matches(CharSequence text) {
+        State state = start;
+        for (int i = 0, n = text.length(); i < n && state != null; i++) {
+            state = step(state, text.charAt(i));
+        }
+        return state != null && state.accept;
+    }
+
+    // Translate one glob into positions starting at pos; returns the position after the last token
+    private int compile(String glob, int pos) {
+        int n = glob.length();
+        for (int i = 0; i < n; i++) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                if (i + 1 < n && glob.charAt(i + 1) == '*' && (i == 0 || glob.charAt(i - 1) == '/')) {
+                    i++;
+                    while (i + 1 < n && glob.charAt(i + 1) == '*') i++;
+                    if (i + 1 < n && glob.charAt(i + 1) == '/') {
+                        i++;
+                        kind[pos++] = DEEP_FOLDERS;
+                    } else {
+                        kind[pos++] = DEEP_STAR;
+                    }
+                } else {
+                    while (i + 1 < n && glob.charAt(i + 1) == '*') i++;
+                    kind[pos++] = STAR;
+                }
+            } else if (c == '?') {
+                kind[pos++] = ANY;
+            } else if (c == '[' && glob.indexOf(']', i + 2) > 0) {
+                int close = glob.indexOf(']', i + 2);
+                String body = glob.substring(i + 1, close);
+                boolean neg = body.startsWith("!") || body.startsWith("^");
+                if (neg) body = body.substring(1);
+                char[] r = new char[body.length() * 2];
+                int k = 0;
+                for (int j = 0; j < body.length(); j++) {
+                    char lo = body.charAt(j);
+                    char hi = lo;
+                    if (j + 2 < body.length() && body.charAt(j + 1) == '-') {
+                        hi = body.charAt(j + 2);
+                        j += 2;
+                    }
+                    r[k++] = lo;
+                    r[k++] = hi;
+                }
+                kind[pos] = CLASS;
+                ranges[pos] = Arrays.copyOf(r, k);
+                negated[pos] = neg;
+                pos++;
+                i = close;
+            } else {
+                if (c == '\\' && i + 1 < n) c = glob.charAt(++i);
+                kind[pos] = LITERAL;
+                literal[pos] = c;
+                pos++;
+            }
+        }
+        return pos;
+    }
+
+    // Add the positions reachable without reading a character (skipping over stars). entered holds the
+    // positions just arrived at (not kept by a star's own loop): "**/" may match zero folders only there,
+    // i.e. at the start of a path segment, so "a/**/b" does not match "a/xb"
+    private BitSet closure(BitSet set, BitSet entered) {
+        for (int p = set.nextSetBit(0); p >= 0; p = set.nextSetBit(p + 1)) {
+            byte k = kind[p];
+            if (k == STAR || k == DEEP_STAR || (k == DEEP_FOLDERS && entered.get(p))) {
+                set.set(p + 1);
+                entered.set(p + 1);
+            }
+        }
+        return set;
+    }
+
+    private State step(State state, char c) {
+        State next = c < 128 ? state.ascii.get(c) : state.other.get(c);
+        if (next != null) return next == State.DEAD ? null : next;
+
+        BitSet target = new BitSet();
+        BitSet entered = new BitSet();
+        BitSet from = state.positions;
+        for (int p = from.nextSetBit(0); p >= 0; p = from.nextSetBit(p + 1)) {
+            switch (kind[p]) {
+                case LITERAL:
+                    if (literal[p] == c) advance(p, target, entered);
+                    break;
+                case ANY:
+                    if (c != '/') advance(p, target, entered);
+                    break;
+                case CLASS:
+                    if (c != '/' && inClass(p, c)) advance(p, target, entered);
+                    break;
+                case STAR:
+                    if (c != '/') target.set(p);
+                    break;
+                case DEEP_STAR:
+                    target.set(p);
+                    break;
+                case DEEP_FOLDERS:
+                    target.set(p);
+                    if (c == '/') advance(p, target, entered); // a whole folder was read
+                    break;
+                default:
+                    break;
+            }
+        }
+        next = target.isEmpty() ? State.DEAD : intern(closure(target, entered));
+        if (next.cacheable) {
+            if (c < 128) state.ascii.set(c, next);
+            else state.other.put(c, next);
+        }
+        return next == State.DEAD ? null : next;
+    }
+
+    private static void advance(int p, BitSet target, BitSet entered) {
+        target.set(p + 1);
+        entered.set(p + 1);
+    }
+
+    private boolean inClass(int p, char c) {
+        char[] r = ranges[p];
+        boolean in = false;
+        for (int i = 0; i < r.length && !in; i += 2) {
+            in = c >= r[i] && c <= r[i + 1];
+        }
+        return in != negated[p];
+    }
+
+    // One DFA state per distinct position set, up to MAX_STATES; beyond that states are not cached
+    private State intern(BitSet positions) {
+        State existing = states.get(positions);
+        if (existing != null) return existing;
+        boolean accept = positions.intersects(accepting);
+        if (states.size() >= MAX_STATES) return new State(positions, accept, false);
+        State created = new State(positions, accept, true);
+        existing = states.putIfAbsent(positions, created);
+        return existing != null ? existing : created;
+    }
+
+    private static final class State {
+        static final State DEAD = new State(new BitSet(), false, true);
+
+        final BitSet positions;
+        final boolean accept;
+        final boolean cacheable;
+        final AtomicReferenceArray<State> ascii = new AtomicReferenceArray<>(128);
+        final Map<Character, State> other = new ConcurrentHashMap<>();
+
+        State(BitSet positions, boolean accept, boolean cacheable) {
+            this.positions = positions;
+            this.accept = accept;
+            this.cacheable = cacheable;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+// File: IconCache.java
+
+import javax.swing.*;
+import javax.swing.filechooser.FileSystemView;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * IconCache - system icons for tree rows, one per file type (folder, or file extension), pre-scaled once.
+ * A type seen for the first time is drawn with a generic placeholder while a single background thread
+ * asks FileSystemView for the icon of that file and scales it; the tree is then repainted once for
+ * all icons that arrived in the meantime. Rendering a row never touches the file system or scales an image.
+ */
+public class IconCache {
+    private static final String FOLDER_KEY = "/";   // cannot be an extension
+
+    private final int size;
+    private final Component owner;
+    private final Map<String, Icon> icons = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean repaintQueued = new AtomicBoolean();
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "icon-loader");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+    private Icon folderPlaceholder;
+    private Icon filePlaceholder;
+
+    // owner is repainted when icons arrive
+    public IconCache(Component owner, int size) {
+        this.owner = owner;
+        this.size = size;
+    }
+
+    // Cache key of a row: folders share one icon, files one per extension
+    public static String keyFor(String name, boolean folder) {
+        if (folder) return FOLDER_KEY;
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    // Icon for a key: cached, or a placeholder while the real one loads. file is only asked for
+    // (to give the platform an example of the type) the first time the key is seen
+    public Icon get(String key, Supplier<File> file) {
+        Icon icon = icons.get(key);
+        if (icon != null) return icon;
+        if (pending.putIfAbsent(key, Boolean.TRUE) == null) {
+            File example = file.get();
+            loader.execute(() -> load(key, example));
+        }
+        return placeholder(FOLDER_KEY.equals(key));
+    }
+
+    private void load(String key, File file) {
+        Icon icon;
+        try {
+            icon = scale(FileSystemView.getFileSystemView().getSystemIcon(file));
+        } catch (RuntimeException e) {
+            icon = null; // file vanished or the platform refused: keep the placeholder
+        }
+        if (icon == null) icon = placeholder(FOLDER_KEY.equals(key));
+        if (icon != null) icons.put(key, icon);
+        if (repaintQueued.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                repaintQueued.set(false);
+                owner.repaint();
+            });
+        }
+    }
+
+    private synchronized Icon placeholder(boolean folder) {
+        if (folder) {
+            if (folderPlaceholder == null) folderPlaceholder = scale(UIManager.getIcon("FileView.directoryIcon"));
+            return folderPlaceholder;
+        }
+        if (filePlaceholder == null) filePlaceholder = scale(UIManager.getIcon("FileView.fileIcon"));
+        return filePlaceholder;
+    }
+
+    // Draw the icon once into a size x size image with smooth interpolation
+    private Icon scale(Icon icon) {
+        if (icon == null || icon.getIconWidth() <= 0 || icon.getIconHeight() <= 0) return null;
+        BufferedImage source = new BufferedImage(icon.getIconWidth(), icon.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = source.createGraphics();
+        if (icon instanceof ImageIcon) {
+            g.drawImage(((ImageIcon) icon).getImage(), 0, 0, null);
+        } else {
+            icon.paintIcon(owner, g, 0, 0);
+        }
+        g.dispose();
+        BufferedImage scaled = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(source, 0, 0, size, size, null);
+        g.dispose();
+        return new ImageIcon(scaled);
+    }
+}
@@ -0,0 +1,230 @@
+// File: IgnoreRules.java
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * IgnoreRules - .gitignore/.ignore patterns of one folder, chained to the rules of the folders above.
+ * Each file is compiled once: plain names (e.g. "target/") go into a hash lookup and
+ * wildcard or path patterns into precompiled regexes. The deepest folder with a matching pattern decides and,
+ * within a folder, the last matching line wins, as in git. Negation ("!keep.txt"), directory-only
+ * patterns ("build/"), anchored patterns ("/out", "docs/tmp") and "**" are supported.
+ */
+public final class IgnoreRules {
+    // Ignore file names read in every folder, in increasing priority
+    public static final String[] FILE_NAMES = {".gitignore", ".ignore"};
+
+    // No rules at all
+    public static final IgnoreRules NONE = new IgnoreRules(null, null, new Rule[0], new HashMap<>());
+
+    private final Path base;                       // folder the patterns are relative to
+    private final IgnoreRules parent;              // rules of the folders above (never null except NONE)
+    private final Rule[] wildcards;                // patterns that need a regex, in file order
+    private final Map<String, int[]> plainNames;   // plain name -> rule indexes, in file order
+    private final Rule[] byIndex;
+
+    private IgnoreRules(Path base, IgnoreRules parent, Rule[] rules, Map<String, int[]> plainNames) {
+        this.base = base;
+        this.parent = parent;
+        this.byIndex = rules;
+        this.plainNames = plainNames;
+        List<Rule> w = new ArrayList<>();
+        for (Rule r : rules) {
+            if (r.regex != null) w.add(r);
+        }
+        this.wildcards = w.toArray(new Rule[0]);
+    }
+
+    // Compile pattern lines relative to base on top of parent; returns parent when there are no patterns
+    public static IgnoreRules compile(Path base, List<String> lines, IgnoreRules parent) {
+        List<Rule> rules = new ArrayList<>();
+        Map<String, List<Integer>> plain = new HashMap<>();
+        for (String line : lines) {
+            Rule rule = Rule.parse(line, rules.size());
+            if (rule == null) continue;
+            rules.add(rule);
+            if (rule.regex == null) plain.computeIfAbsent(rule.text, k -> new ArrayList<>()).add(rule.index);
+        }
+        if (rules.isEmpty()) return parent;
+        Map<String, int[]> plainNames = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> e : plain.entrySet()) {
+            plainNames.put(e.getKey(), e.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        return new IgnoreRules(base, parent, rules.toArray(new Rule[0]), plainNames);
+    }
+
+    // Rules for a folder given its already listed children (ignore files are only read when present)
+    public IgnoreRules enter(Path dir, List<FileEntry> children) {
+        IgnoreRules rules = this;
+        for (String fileName : FILE_NAMES) {
+            for (FileEntry child : children) {
+                if (child.isFile() && child.getName().equals(fileName)) {
+                    rules = compile(dir, readLines(child.getPath()), rules);
+                    break;
+                }
+            }
+        }
+        return rules;
+    }
+
+    // Rules for a folder, checking the disk for its ignore files
+    public IgnoreRules enter(Path dir) {
+        IgnoreRules rules = this;
+        for (String fileName : FILE_NAMES) {
+            Path file = dir.resolve(fileName);
+            if (Files.isRegularFile(file)) rules = compile(dir, readLines(file), rules);
+        }
+        return rules;
+    }
+
+    private static List<String> readLines(Path file) {
+        try {
+            return Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException | RuntimeException e) {
+            return new ArrayList<>(); // unreadable or not UTF-8: ignore the file, as git does for bad lines
+        }
+    }
+
+    // True if path (below the folders these rules belong to) is ignored
+    public boolean isIgnored(Path path, boolean directory) {
+        String name = path.getFileName() == null ? "" : path.getFileName().toString();
+        for (IgnoreRules r = this; r != NONE && r != null; r = r.parent) {
+            int decision = r.match(path, name, directory);
+            if (decision != 0) return decision > 0;
+        }
+        return false;
+    }
+
+    // 1 = ignored, -1 = re-included by a negated pattern, 0 = no pattern of this folder matches
+    private int match(Path path, String name, boolean directory) {
+        if (!path.startsWith(base)) return 0;
+        int best = -1;
+        int[] plain = plainNames.get(name);
+        if (plain != null) {
+            for (int i = plain.length - 1; i >= 0; i--) {
+                if (directory || !byIndex[plain[i]].dirOnly) {
+                    best = plain[i];
+                    break;
+                }
+            }
+        }
+        String relative = null;
+        for (int i = wildcards.length - 1; i >= 0 && wildcards[i].index > best; i--) {
+            Rule rule = wildcards[i];
+            if (rule.dirOnly && !directory) continue;
+            String subject;
+            if (rule.anchored) {
+                if (relative == null) relative = relativize(path);
+                subject = relative;
+            } else {
+                subject = name;
+            }
+            if (rule.regex.matcher(subject).matches()) {
+                best = rule.index;
+                break;
+            }
+        }
+        if (best < 0) return 0;
+        return byIndex[best].negate ? -1 : 1;
+    }
+
+    private String relativize(Path path) {
+        String s = base.relativize(path).toString();
+        return path.getFileSystem().getSeparator().equals("/") ? s : s.replace(path.getFileSystem().getSeparator(), "/");
+    }
+
+    // One compiled pattern line
+    private static final class Rule {
+        final int index;
+        final String text;     // pattern without '!', leading '/' and trailing '/'
+        final boolean negate;
+        final boolean dirOnly;
+        final boolean anchored; // matched against the path relative to the base, not just the name
+        final Pattern regex;    // null for a plain name
+
+        private Rule(int index, String text, boolean negate, boolean dirOnly, boolean anchored, Pattern regex) {
+            this.index = index;
+            this.text = text;
+            this.negate = negate;
+            this.dirOnly = dirOnly;
+            this.anchored = anchored;
+            this.regex = regex;
+        }
+
+        // Parse one line; null for blanks and comments
+        static Rule parse(String line, int index) {
+            String p = stripTrailingSpaces(line);
+            if (p.isEmpty() || p.startsWith("#")) return null;
+            boolean negate = false;
+            if (p.startsWith("!")) {
+                negate = true;
+                p = p.substring(1);
+            } else if (p.startsWith("\\!") || p.startsWith("\\#")) {
+                p = p.substring(1);
+            }
+            boolean dirOnly = p.endsWith("/");
+            if (dirOnly) p = p.substring(0, p.length() - 1);
+            boolean anchored = p.indexOf('/') >= 0;
+            if (p.startsWith("/")) p = p.substring(1);
+            if (p.isEmpty()) return null;
+            boolean wildcard = anchored || p.indexOf('*') >= 0 || p.indexOf('?') >= 0
+                    || p.indexOf('[') >= 0 || p.indexOf('\\') >= 0;
+            Pattern regex = wildcard ? Pattern.compile(toRegex(p)) : null;
+            return new Rule(index, p, negate, dirOnly, anchored, regex);
+        }
+
+        private static String stripTrailingSpaces(String line) {
+            int end = line.length();
+            while (end > 0 && line.charAt(end - 1) == ' ' && !(end > 1 && line.charAt(end - 2) == '\\')) end--;
+            return line.substring(0, end);
+        }
+
+        // Glob to regex: '*' and '?' stay within one path segment, "**" spans segments
+        private static String toRegex(String glob) {
+            StringBuilder sb = new StringBuilder();
+            int n = glob.length();
+            for (int i = 0; i < n; i++) {
+                char c = glob.charAt(i);
+                if (c == '*') {
+                    boolean doubleStar = i + 1 < n && glob.charAt(i + 1) == '*';
+                    if (doubleStar) {
+                        boolean segmentStart = i == 0 || glob.charAt(i - 1) == '/';
+                        i++;
+                        if (segmentStart && i + 1 < n && glob.charAt(i + 1) == '/') {
+                            sb.append("(?:.*/)?"); // "**/" = zero or more folders
+                            i++;
+                        } else {
+                            sb.append(".*");
+                        }
+                    } else {
+                        sb.append("[^/]*");
+                    }
+                } else if (c == '?') {
+                    sb.append("[^/]");
+                } else if (c == '[') {
+                    int close = glob.indexOf(']', i + 2);
+                    if (close < 0) {
+                        sb.append("\\[");
+                        continue;
+                    }
+                    String body = glob.substring(i + 1, close);
+                    if (body.startsWith("!")) body = "^" + body.substring(1);
+                    sb.append('[').append(body.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+                    i = close;
+                } else if (c == '\\' && i + 1 < n) {
+                    sb.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                } else {
+                    sb.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
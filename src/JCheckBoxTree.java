@@ -1,38 +1,43 @@
 // File: JCheckBoxTree.java
 
 import javax.swing.*;
-import javax.swing.filechooser.FileSystemView;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.TreeNode;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.tree.TreeModel;
 import javax.swing.tree.TreePath;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.Image;
-import javax.swing.ImageIcon;
-import java.io.File;
 import java.util.*;
 import java.util.List;
 
 /**
- * JCheckBoxTree - JTree with checkbox support; checked state stored in a Map.
- * Clicking toggles node checkbox, cascades to children, updates parents.
+ * JCheckBoxTree - JTree with checkbox support over a FileTreeModel; nodes are Integer ids into the
+ * model's FileTreeStore and checked state (with per-folder counts) lives in a CheckState.
+ * Clicking toggles node checkbox, cascades to children, updates parents; partially checked
+ * folders are drawn with an indeterminate box.
  * Provides helper getSelectedFiles() and setAllChecked(true).
+ * Folders loaded lazily show a single LOADING_PLACEHOLDER child until they are expanded.
  */
 public class JCheckBoxTree extends JTree {
-    private final Map<DefaultMutableTreeNode, Boolean> checkedMap = new HashMap<>();
+    public static final String LOADING_PLACEHOLDER = "Loading...";
 
-    // Constructor accepts a TreeNode root
-    public JCheckBoxTree(TreeNode root) {
-        super(root);
+    private final CheckState checkState = new CheckState();
+    private FileMatcher fileFilter = FileMatcher.ALL; // applied to checked files in getSelectedFiles
+
+    // Constructor accepts the file tree model
+    public JCheckBoxTree(FileTreeModel model) {
+        super(model);
+        checkState.reset(getStore(), false);
         setCellRenderer(new CheckBoxTreeCellRenderer());
         addMouseListener(new MouseAdapter() {
             @Override
             public void mousePressed(MouseEvent e) {
                 TreePath path = getPathForLocation(e.getX(), e.getY());
                 if (path == null) return;
-                DefaultMutableTreeNode node = (DefaultMutableTreeNode) path.getLastPathComponent();
-                toggleNode(node);
+                Object node = path.getLastPathComponent();
+                if (!(node instanceof Integer)) return;
+                toggleNode((Integer) node);
                 repaint();
             }
         });
@@ -43,92 +48,161 @@ public class JCheckBoxTree extends JTree {
         setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
     }
 
-    // Toggle a node and update children/parents
-    private void toggleNode(DefaultMutableTreeNode node) {
-        boolean newState = !isChecked(node);
-        setChecked(node, newState);
-        setChildrenChecked(node, newState);
-        updateParentState(node);
+    // Replacing the model by one over another store discards the check state of the previous tree;
+    // another view of the same store (quick filter) keeps it
+    @Override
+    public void setModel(TreeModel newModel) {
+        super.setModel(newModel);
+        if (checkState != null && checkState.getStore() != getStore()) { // null while JTree's constructor runs
+            checkState.reset(getStore(), false);
+            fireCheckStateChanged();
+        }
     }
 
-    // Recursively set children checked state
-    private void setChildrenChecked(DefaultMutableTreeNode parent, boolean state) {
-        for (int i = 0; i < parent.getChildCount(); i++) {
-            DefaultMutableTreeNode child = (DefaultMutableTreeNode) parent.getChildAt(i);
-            setChecked(child, state);
-            setChildrenChecked(child, state);
-        }
+    // Store behind the current model (null while no folder is loaded)
+    public FileTreeStore getStore() {
+        TreeModel model = getModel();
+        return model instanceof FileTreeModel ? ((FileTreeModel) model).getStore() : null;
     }
 
-    // Update parent aggregate state (all->true, none->false, partial->false visually)
-    private void updateParentState(DefaultMutableTreeNode node) {
-        TreeNode p = node.getParent();
-        if (!(p instanceof DefaultMutableTreeNode)) return;
-        DefaultMutableTreeNode parent = (DefaultMutableTreeNode) p;
+    // Toggle a node; children and parent counts are updated incrementally
+    private void toggleNode(int node) {
+        setCheckedRecursively(node, !isChecked(node));
+    }
 
-        boolean all = true;
-        boolean none = true;
+    // Get checked state (default false)
+    public boolean isChecked(int node) {
+        return checkState.isChecked(node);
+    }
 
-        for (int i = 0; i < parent.getChildCount(); i++) {
-            DefaultMutableTreeNode child = (DefaultMutableTreeNode) parent.getChildAt(i);
-            if (isChecked(child)) none = false;
-            else all = false;
-        }
+    // Set all nodes checked/unchecked
+    public void setAllChecked(boolean state) {
+        checkState.setAll(state);
+        fireCheckStateChanged();
+        repaint();
+    }
 
-        if (all) setChecked(parent, true);
-        else if (none) setChecked(parent, false);
-        else setChecked(parent, false); // partial -> treat as unchecked (can be extended)
-        updateParentState(parent);
+    // Set the state of several nodes with their subtrees at once (e.g. every quick-filter match);
+    // listeners are notified once
+    public void setChecked(int[] nodes, boolean state) {
+        if (getStore() == null) return;
+        for (int node : nodes) checkState.setSubtree(node, state);
+        fireCheckStateChanged();
+        repaint();
     }
 
-    // Set checked state in map
-    private void setChecked(DefaultMutableTreeNode node, boolean state) {
-        checkedMap.put(node, state);
+    // Set checked state for a given node and its children, updating its parents
+    public void setCheckedRecursively(int node, boolean state) {
+        if (getStore() == null) return;
+        checkState.setSubtree(node, state);
+        fireCheckStateChanged();
     }
 
-    // Get checked state (default false)
-    public boolean isChecked(DefaultMutableTreeNode node) {
-        return checkedMap.getOrDefault(node, false);
+    // Checked flags for saving (see ScanSnapshot)
+    public boolean getDefaultCheckState() {
+        return checkState.getDefaultState();
     }
 
-    // Set all nodes checked/unchecked
-    public void setAllChecked(boolean state) {
-        Object rootObj = getModel().getRoot();
-        if (rootObj instanceof DefaultMutableTreeNode) {
-            setCheckedRecursively((DefaultMutableTreeNode) rootObj, state);
-        }
+    public BitSet getExplicitCheckFlags() {
+        return checkState.getExplicitFlags();
+    }
+
+    // Put back saved flags for the current store
+    public void restoreCheckState(boolean defaultState, BitSet explicit) {
+        if (getStore() == null) return;
+        checkState.restore(getStore(), defaultState, explicit);
+        fireCheckStateChanged();
         repaint();
     }
 
-    // Recursively set checked state for a given node and its children
-    public void setCheckedRecursively(DefaultMutableTreeNode node, boolean state) {
-        setChecked(node, state);
-        setChildrenChecked(node, state);
+    // Flags of the current tree carried over to a rescanned store (call before switching models)
+    public BitSet carryOverCheckState(FileTreeStore rescanned) {
+        return checkState.carryOver(rescanned);
+    }
+
+    // Called after a lazy folder's children were appended to the store
+    public void childrenListed(int node) {
+        childrenListed(node, true);
+    }
+
+    // Same for one folder of a batch (streaming scan): only the last call of the batch notifies listeners
+    public void childrenListed(int node, boolean notify) {
+        checkState.childrenListed(node);
+        if (notify) fireCheckStateChanged();
+    }
+
+    // Live refresh: replace a folder's children in the store; new entries take 'state', the rest keep theirs
+    public int[] replaceChildren(int node, int[] children, int[] added, boolean state) {
+        int[] removed = checkState.replaceChildren(node, children, added, state);
+        fireCheckStateChanged();
+        return removed;
+    }
+
+    // Number of checked files (without unexpanded folders) and their total size
+    public int getCheckedFileCount() {
+        return checkState.getCheckedFileCount();
+    }
+
+    public long getCheckedBytes() {
+        return checkState.getCheckedBytes();
+    }
+
+    // Checked folders that were never expanded (their files are not counted yet)
+    public int getCheckedUnlistedCount() {
+        return checkState.getCheckedUnlistedCount();
+    }
+
+    // Listeners notified whenever the checked selection changes
+    public void addCheckChangeListener(ChangeListener l) {
+        listenerList.add(ChangeListener.class, l);
+    }
+
+    private void fireCheckStateChanged() {
+        ChangeEvent event = new ChangeEvent(this);
+        for (ChangeListener l : listenerList.getListeners(ChangeListener.class)) {
+            l.stateChanged(event);
+        }
+    }
+
+    // True if the node is a lazy folder whose children have not been listed yet
+    public boolean isUnloaded(int node) {
+        return getStore().isUnlisted(node);
+    }
+
+    // Filter applied when collecting the selection (the tree itself may hold files it rejects)
+    public void setFileFilter(FileMatcher filter) {
+        this.fileFilter = filter;
+    }
+
+    public FileMatcher getFileFilter() {
+        return fileFilter;
     }
 
-    // Collect and return selected files (only regular files)
-    public List<File> getSelectedFiles() {
-        List<File> out = new ArrayList<>();
-        Object rootObj = getModel().getRoot();
-        if (rootObj instanceof DefaultMutableTreeNode) {
-            collectCheckedFiles((DefaultMutableTreeNode) rootObj, out);
+    // Collect and return selected files in tree order that pass the file filter; checked folders
+    // that were never expanded are returned as the folder itself and mean "all files under it"
+    public List<FileEntry> getSelectedFiles() {
+        List<FileEntry> out = new ArrayList<>();
+        FileTreeStore store = getStore();
+        if (store != null) {
+            collectCheckedFiles(store, 0, out);
         }
         return out;
     }
 
     // Recursive helper to collect files
-    private void collectCheckedFiles(DefaultMutableTreeNode node, List<File> out) {
+    private void collectCheckedFiles(FileTreeStore store, int node, List<FileEntry> out) {
         boolean checked = isChecked(node);
-        Object userObj = node.getUserObject();
-        if (userObj instanceof File) {
-            File f = (File) userObj;
-            if (f.isFile() && checked) {
-                out.add(f);
-            }
+        if (store.isUnlisted(node)) {
+            if (checked) out.add(store.getEntry(node));
+            return;
+        }
+        if (store.isFile(node) && checked) {
+            FileEntry entry = store.getEntry(node);
+            if (fileFilter.accepts(store.getRootPath(), entry)) out.add(entry);
         }
-        for (int i = 0; i < node.getChildCount(); i++) {
-            DefaultMutableTreeNode child = (DefaultMutableTreeNode) node.getChildAt(i);
-            collectCheckedFiles(child, out);
+        int count = store.getChildCount(node);
+        for (int i = 0; i < count; i++) {
+            collectCheckedFiles(store, store.getChild(node, i), out);
         }
     }
 
@@ -140,6 +214,16 @@ public class JCheckBoxTree extends JTree {
         private final Color SELECTION_BG = new Color(25, 118, 210, 30); // Blue selection
         private final Color HOVER_BG = new Color(25, 118, 210, 15);
         private boolean hover = false;
+        private final Icon uncheckedIcon = createUncheckedIcon();
+        private final Icon partialIcon = createPartialIcon();
+        private final IconCache icons = new IconCache(JCheckBoxTree.this, 24);
+
+        // Per-node label text and icon key, built on first paint. Names and flags of an id never
+        // change; the size can (live refresh), so it is kept to tell when a label is stale
+        private FileTreeStore labelStore;
+        private String[] labels = new String[0];
+        private String[] iconKeys = new String[0];
+        private long[] labelSizes = new long[0];
 
         CheckBoxTreeCellRenderer() {
             panel.setLayout(new BorderLayout(12, 0));
@@ -153,7 +237,7 @@ public class JCheckBoxTree extends JTree {
             check.setBackground(new Color(250, 250, 250));
             check.setForeground(new Color(33, 33, 33));
             check.setFont(new Font("Segoe UI", Font.PLAIN, 14));
-            check.setIcon(createUncheckedIcon());
+            check.setIcon(uncheckedIcon);
             check.setSelectedIcon(createCheckedIcon());
             check.setFocusPainted(false);
 
@@ -198,6 +282,33 @@ public class JCheckBoxTree extends JTree {
             };
         }
 
+        // Indeterminate box for partially checked folders
+        private Icon createPartialIcon() {
+            return new Icon() {
+                @Override
+                public void paintIcon(Component c, Graphics g, int x, int y) {
+                    Graphics2D g2 = (Graphics2D) g.create();
+                    g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+                    // Draw background
+                    g2.setColor(new Color(25, 118, 210)); // Blue 500
+                    g2.fillRoundRect(x + 1, y + 1, 16, 16, 4, 4);
+
+                    // Draw dash
+                    g2.setColor(Color.WHITE);
+                    g2.setStroke(new BasicStroke(2f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+                    g2.drawLine(x + 5, y + 9, x + 13, y + 9);
+                    g2.dispose();
+                }
+
+                @Override
+                public int getIconWidth() { return 20; }
+
+                @Override
+                public int getIconHeight() { return 20; }
+            };
+        }
+
         private Icon createCheckedIcon() {
             return new Icon() {
                 @Override
@@ -228,36 +339,22 @@ public class JCheckBoxTree extends JTree {
         @Override
         public Component getTreeCellRendererComponent(JTree tree, Object value,
                                                       boolean selected, boolean expanded, boolean leaf, int row, boolean hasFocus) {
-            DefaultMutableTreeNode node = (DefaultMutableTreeNode) value;
-            Object userObj = node.getUserObject();
-
-            if (userObj instanceof File) {
-                File f = (File) userObj;
-                String name = f.getName().isEmpty() ? f.getAbsolutePath() : f.getName();
-                label.setText(name);
-
-                // Get and resize icon
-                Icon origIcon = FileSystemView.getFileSystemView().getSystemIcon(f);
-                if (origIcon != null && origIcon instanceof ImageIcon) {
-                    Image img = ((ImageIcon) origIcon).getImage();
-                    Image scaledImg = img.getScaledInstance(24, 24, Image.SCALE_SMOOTH);
-                    label.setIcon(new ImageIcon(scaledImg));
-                } else {
-                    label.setIcon(origIcon);
-                }
-
-                // Add file size and type info for files
-                if (f.isFile()) {
-                    String details = String.format("  (%.1f KB)", f.length() / 1024.0);
-                    label.setText(name + details);
-                }
+            FileTreeStore store = getStore();
+
+            if (value instanceof Integer && store != null) {
+                int node = (Integer) value;
+                label.setText(labelFor(store, node));
+                label.setIcon(icons.get(iconKeys[node], () -> store.getPath(node).toFile()));
+                CheckState.State state = checkState.getState(node);
+                check.setIcon(state == CheckState.State.PARTIAL ? partialIcon : uncheckedIcon);
+                check.setSelected(state == CheckState.State.ALL);
             } else {
-                label.setText(String.valueOf(userObj));
+                check.setIcon(uncheckedIcon);
+                label.setText(String.valueOf(value));
                 label.setIcon(null);
+                check.setSelected(false);
             }
 
-            check.setSelected(isChecked(node));
-
             // Modern Material Design selection and hover effects
             if (selected) {
                 panel.setBackground(SELECTION_BG);
@@ -281,5 +378,42 @@ public class JCheckBoxTree extends JTree {
 
             return panel;
         }
+
+        // Label of a row from the scanned attributes (no disk access), cached per node id
+        private String labelFor(FileTreeStore store, int node) {
+            if (store != labelStore || node >= labels.length) {
+                // ids appended later (streaming scan, live refresh) grow the cache geometrically
+                int capacity = Math.max(Math.max(store.size(), node + 1), store == labelStore ? labels.length * 2 : 0);
+                if (store != labelStore) {
+                    labelStore = store;
+                    labels = new String[capacity];
+                    iconKeys = new String[capacity];
+                    labelSizes = new long[capacity];
+                } else {
+                    labels = Arrays.copyOf(labels, capacity);
+                    iconKeys = Arrays.copyOf(iconKeys, capacity);
+                    labelSizes = Arrays.copyOf(labelSizes, capacity);
+                }
+            }
+            long size = store.getSize(node);
+            if (labels[node] != null && labelSizes[node] == size) return labels[node];
+
+            String name = store.getName(node);
+            StringBuilder text = new StringBuilder(name);
+            // Add file size for files
+            if (store.isFile(node)) {
+                text.append(String.format("  (%.1f KB)", size / 1024.0));
+            }
+            if (store.isLink(node)) {
+                text.append("  ↪ link");
+            }
+            if (store.isLoop(node)) {
+                text.append("  ... (cyclic reference skipped)");
+            }
+            labels[node] = text.toString();
+            iconKeys[node] = IconCache.keyFor(name, !store.isFile(node));
+            labelSizes[node] = size;
+            return labels[node];
+        }
     }
 }
\ No newline at end of file
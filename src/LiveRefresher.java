@@ -0,0 +1,367 @@
+// File: LiveRefresher.java
+
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * LiveRefresher - keeps the tree on screen in step with the disk while live mode is on.
+ * Every listed folder is registered with a WatchService; events are collected until the folder
+ * tree has been quiet for a moment (or a burst such as a git checkout has run for MAX_DELAY_MILLIS)
+ * and each changed folder is then relisted on its own. The result is applied to the store in place:
+ * surviving entries keep their ids and check state, and the model fires only the inserts, removals
+ * and changes of that folder, so the cost follows the number of changed folders, not the tree size.
+ * Lost events (overflow) and very large bursts fall back to the mtime-based rescan.
+ */
+public class LiveRefresher {
+    // Quiet time that ends a burst, and the longest a burst is held back
+    private static final long QUIET_MILLIS = 300;
+    private static final long MAX_DELAY_MILLIS = 2000;
+
+    // More changed folders than this in one batch are cheaper to revalidate with a rescan
+    private static final int MAX_FOLDERS_PER_BATCH = 2000;
+
+    private final JCheckBoxTree tree;
+    private final FileTreeModel model;
+    private final DirectoryScanner scanner;
+    private final boolean lazy;              // new folders stay unlisted instead of being scanned
+    private final Consumer<String> status;   // called on the EDT
+    private final Runnable fallback;         // full revalidation, called on the EDT
+    private final Queue<Path> toRegister = new ConcurrentLinkedQueue<>();
+    private final Set<Path> pending = new HashSet<>(); // EDT only
+    private WatchService watcher;
+    private Thread thread;
+    private volatile boolean running;
+    private boolean refreshing;
+    private boolean limitReported;
+
+    public LiveRefresher(JCheckBoxTree tree, FileTreeModel model, DirectoryScanner scanner, boolean lazy,
+                         Consumer<String> status, Runnable fallback) {
+        this.tree = tree;
+        this.model = model;
+        this.scanner = scanner;
+        this.lazy = lazy;
+        this.status = status;
+        this.fallback = fallback;
+    }
+
+    // Start watching every listed folder of the model (call on the EDT)
+    public void start() throws IOException {
+        watcher = FileSystems.getDefault().newWatchService();
+        List<Path> folders = listedFolders(0);
+        toRegister.addAll(folders);
+        running = true;
+        thread = new Thread(this::watchLoop, "live-refresh");
+        thread.setDaemon(true);
+        thread.start();
+        status.accept(String.format("👁 Live refresh on: watching %,d folders", folders.size()));
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            if (watcher != null) watcher.close();
+        } catch (IOException ignored) {
+            // closing only wakes the watcher thread
+        }
+    }
+
+    public boolean watches(FileTreeModel other) {
+        return running && model == other;
+    }
+
+    // A lazy folder was just listed: watch it too
+    public void folderListed(int id) {
+        if (running) toRegister.add(model.getStore().getPath(id));
+    }
+
+    // Paths of the listed folders in the subtree of id
+    private List<Path> listedFolders(int id) {
+        FileTreeStore store = model.getStore();
+        List<Path> out = new ArrayList<>();
+        Deque<Integer> ids = new ArrayDeque<>();
+        Deque<Path> paths = new ArrayDeque<>();
+        ids.push(id);
+        paths.push(store.getPath(id));
+        while (!ids.isEmpty()) {
+            int node = ids.pop();
+            Path path = paths.pop();
+            if (store.getChildCount(node) < 0 || !store.isDirectory(node) || store.isLoop(node)) continue;
+            out.add(path);
+            for (int i = 0; i < store.getChildCount(node); i++) {
+                int c = store.getChild(node, i);
+                if (store.isExpandable(c)) {
+                    ids.push(c);
+                    paths.push(path.resolve(store.getName(c)));
+                }
+            }
+        }
+        return out;
+    }
+
+    // Watcher thread: register new folders, collect events and hand each burst to the EDT
+    private void watchLoop() {
+        Set<Path> batch = new HashSet<>();
+        boolean overflow = false;
+        long firstEvent = 0;
+        try {
+            while (running) {
+                registerPending();
+                WatchKey key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    if (batch.isEmpty()) firstEvent = System.currentTimeMillis();
+                    Path dir = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) overflow = true;
+                    }
+                    batch.add(dir);
+                    key.reset(); // an invalid key (folder deleted) is dropped by the watch service
+                }
+                boolean quiet = key == null || System.currentTimeMillis() - firstEvent >= MAX_DELAY_MILLIS;
+                if (!batch.isEmpty() && quiet) {
+                    Set<Path> ready = batch;
+                    boolean lost = overflow;
+                    SwingUtilities.invokeLater(() -> enqueue(ready, lost));
+                    batch = new HashSet<>();
+                    overflow = false;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    private void registerPending() {
+        for (Path dir; (dir = toRegister.poll()) != null; ) {
+            try {
+                dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (NoSuchFileException e) {
+                // removed meanwhile
+            } catch (IOException e) {
+                // usually the per-user watch limit; folders beyond it are only seen by Refresh
+                if (!limitReported) {
+                    limitReported = true;
+                    String reason = e.getMessage();
+                    SwingUtilities.invokeLater(() -> status.accept("⚠️ Live refresh cannot watch every folder: " + reason));
+                }
+                toRegister.clear();
+            }
+        }
+    }
+
+    // EDT: queue a burst; only one refresh runs at a time
+    private void enqueue(Set<Path> dirs, boolean overflow) {
+        if (!running || tree.getStore() != model.getStore()) return;
+        if (overflow) {
+            status.accept("⚠️ Live refresh missed events, revalidating the whole tree");
+            fallback.run();
+            return;
+        }
+        pending.addAll(dirs);
+        if (!refreshing) refreshPending();
+    }
+
+    // EDT: resolve the pending folders to ids and relist them in the background
+    private void refreshPending() {
+        FileTreeStore store = model.getStore();
+        List<Job> jobs = new ArrayList<>();
+        for (Path dir : pending) {
+            int id = findId(store, dir);
+            if (id >= 0 && store.getChildCount(id) >= 0) jobs.add(new Job(store, id, dir));
+        }
+        pending.clear();
+        if (jobs.isEmpty()) return;
+        if (jobs.size() > MAX_FOLDERS_PER_BATCH) {
+            status.accept(String.format("🔄 Live refresh: %,d folders changed, revalidating the whole tree", jobs.size()));
+            fallback.run();
+            return;
+        }
+        jobs.sort(Comparator.comparingInt(j -> j.path.getNameCount())); // parents first
+        refreshing = true;
+        long start = System.nanoTime();
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                for (Job job : jobs) job.list();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                refreshing = false;
+                if (!running || tree.getStore() != model.getStore()) return;
+                for (String warning : scanner.drainWarnings()) status.accept(warning);
+                int[] totals = new int[3];
+                List<Path> newFolders = new ArrayList<>();
+                for (Job job : jobs) apply(job, totals, newFolders);
+                toRegister.addAll(newFolders);
+                if (totals[0] + totals[1] + totals[2] > 0) {
+                    status.accept(String.format("🔄 Live refresh: %,d folders, +%,d / -%,d / ~%,d entries in %,d ms",
+                            jobs.size(), totals[0], totals[1], totals[2], (System.nanoTime() - start) / 1_000_000L));
+                }
+                if (!pending.isEmpty()) refreshPending();
+            }
+        }.execute();
+    }
+
+    // EDT: merge one relisted folder into the store and fire the minimal model events.
+    // totals = {added, removed, changed}
+    private void apply(Job job, int[] totals, List<Path> newFolders) {
+        FileTreeStore store = model.getStore();
+        int dir = job.id;
+        if (job.children == null || store.getChildCount(dir) < 0 || !store.isAttached(dir)) return;
+        boolean state = tree.isChecked(dir);
+        if (job.attributes != null) {
+            store.setAttributes(dir, job.attributes.getSize(), job.attributes.getLastModified());
+        }
+
+        int n = job.children.size();
+        int[] children = new int[n];
+        int[] added = new int[job.added.size()];
+        int start = added.length > 0 ? store.appendDetached(dir, job.added) : -1;
+        int[] addedIndexes = new int[added.length];
+        Set<Integer> kept = new HashSet<>();
+        List<Integer> changed = new ArrayList<>();
+        for (int i = 0, k = 0; i < n; i++) {
+            FileEntry child = job.children.get(i);
+            Integer old = job.before.get(child.getName());
+            if (old != null && store.isDirectory(old) == child.isDirectory()) {
+                children[i] = old;
+                kept.add(old);
+                if (store.getSize(old) != child.getSize() || store.getLastModified(old) != child.getLastModified()) {
+                    store.setAttributes(old, child.getSize(), child.getLastModified());
+                    if (!child.isDirectory()) changed.add(old);
+                }
+            } else {
+                children[i] = start + k;
+                added[k] = start + k;
+                addedIndexes[k++] = i;
+            }
+        }
+
+        // Removals first, with the positions they had, then inserts at their new positions
+        int oldCount = store.getChildCount(dir);
+        List<Integer> removedIndexes = new ArrayList<>();
+        int[] keptIds = new int[kept.size()];
+        for (int i = 0, k = 0; i < oldCount; i++) {
+            int c = store.getChild(dir, i);
+            if (kept.contains(c)) keptIds[k++] = c;
+            else removedIndexes.add(i);
+        }
+        if (!removedIndexes.isEmpty()) {
+            int[] removed = tree.replaceChildren(dir, keptIds, new int[0], state);
+            model.fireTreeNodesRemoved(dir, toArray(removedIndexes), boxed(removed));
+            totals[1] += removed.length;
+        }
+        tree.replaceChildren(dir, children, added, state);
+        if (added.length > 0) {
+            model.fireTreeNodesInserted(dir, addedIndexes, boxed(added));
+            totals[0] += added.length;
+            if (!lazy) {
+                for (int a : added) {
+                    if (store.isExpandable(a)) newFolders.addAll(listedFolders(a));
+                }
+            }
+        }
+        if (!changed.isEmpty()) {
+            int[] indexes = new int[changed.size()];
+            for (int i = 0; i < indexes.length; i++) indexes[i] = store.indexOfChild(dir, changed.get(i));
+            model.fireTreeNodesChanged(dir, indexes, changed.toArray());
+            totals[2] += changed.size();
+        }
+        model.fireNodeAndAncestorsChanged(dir);
+    }
+
+    // Id of the folder at path, found by name from the root, or -1 when it is not in the tree
+    private static int findId(FileTreeStore store, Path path) {
+        Path root = store.getRootPath();
+        if (!path.startsWith(root)) return -1;
+        int id = 0;
+        for (Path name : root.relativize(path)) {
+            if (name.toString().isEmpty()) continue;
+            byte[] utf8 = name.toString().getBytes(StandardCharsets.UTF_8);
+            int found = -1;
+            for (int i = 0; i < store.getChildCount(id) && found < 0; i++) {
+                int c = store.getChild(id, i);
+                if (store.isDirectory(c) && store.nameEquals(c, utf8)) found = c;
+            }
+            if (found < 0) return -1;
+            id = found;
+        }
+        return id;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] out = new int[list.size()];
+        for (int i = 0; i < out.length; i++) out[i] = list.get(i);
+        return out;
+    }
+
+    private static Object[] boxed(int[] ids) {
+        Object[] out = new Object[ids.length];
+        for (int i = 0; i < ids.length; i++) out[i] = ids[i];
+        return out;
+    }
+
+    // One folder to relist: its children by name as the tree has them, then the new listing
+    private final class Job {
+        final int id;
+        final Path path;
+        final FileEntry entry;
+        final Map<String, Integer> before = new HashMap<>();
+        final Set<String> beforeFolders = new HashSet<>();
+        List<FileEntry> children;       // null when the folder could not be listed
+        FileEntry attributes;           // the folder itself, re-read
+        FileTreeStore.Block added;      // entries that are not in the tree yet, in tree order
+
+        Job(FileTreeStore store, int id, Path path) {
+            this.id = id;
+            this.path = path;
+            this.entry = store.getEntry(id);
+            for (int i = 0; i < store.getChildCount(id); i++) {
+                int c = store.getChild(id, i);
+                String name = store.getName(c);
+                before.put(name, c);
+                if (store.isDirectory(c)) beforeFolders.add(name);
+            }
+        }
+
+        // Background: list the folder and build the block of new entries (new folders scanned in full)
+        void list() {
+            try {
+                children = scanner.relistChildren(entry);
+            } catch (IOException | SecurityException e) {
+                children = null; // gone or unreadable: its parent's refresh removes it
+                return;
+            }
+            attributes = FileEntry.read(path);
+            List<FileEntry> fresh = new ArrayList<>();
+            for (FileEntry child : children) {
+                String name = child.getName();
+                if (!before.containsKey(name) || beforeFolders.contains(name) != child.isDirectory()) fresh.add(child);
+            }
+            if (lazy) {
+                boolean[] descend = new boolean[fresh.size()];
+                for (int i = 0; i < descend.length; i++) descend[i] = scanner.canDescend(fresh.get(i));
+                added = FileTreeStore.Block.of(fresh, descend);
+            } else {
+                added = scanner.scanAdded(path, fresh);
+            }
+        }
+    }
+}
@@ -1,5 +1,9 @@
 public class Main {
     public static void main(String[] args) {
+        if (args.length > 0) {
+            // headless mode: no Swing/AWT classes are loaded
+            System.exit(CombinerCli.run(args));
+        }
         DirectoryBrowser.launch();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,315 @@
+// File: NameIndex.java
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * NameIndex - finds tree entries by name for the quick filter without walking the tree.
+ * copy() takes the names of a store, lower-cased, into one byte pool, which is quick enough for the EDT;
+ * build() then files every name under the hashed trigrams it contains (64K buckets of ascending id
+ * lists), off the EDT. A query intersects the lists of the trigrams of its literal parts and checks
+ * only the ids left against the pool; a query without a literal of three bytes checks every name.
+ * Ids appended to the store after the copy are checked one by one on the store itself.
+ * Query syntax: plain text matches anywhere in a name, text with * ? or [ is a glob for the whole name,
+ * /text/ is a regular expression. Case is ignored: names and query text are lower-cased alike (Locale.ROOT).
+ */
+public final class NameIndex {
+    private static final int BUCKET_BITS = 16;
+
+    private final FileTreeStore store;
+    private final int count;        // ids below this are in the pool
+    private final byte[] pool;
+    private final int[] offsets;    // name of id: pool[offsets[id] .. offsets[id + 1])
+    private int[] bucketStart;      // ids of bucket b: ids[bucketStart[b] .. bucketStart[b + 1])
+    private int[] ids;
+
+    private NameIndex(FileTreeStore store, int count, byte[] pool, int[] offsets) {
+        this.store = store;
+        this.count = count;
+        this.pool = pool;
+        this.offsets = offsets;
+    }
+
+    // Copy the names of store as they are now; call on the thread that changes the store (the EDT)
+    public static NameIndex copy(FileTreeStore store) {
+        int n = store.size();
+        int[] offsets = new int[n + 1];
+        int total = 0;
+        for (int id = 0; id < n; id++) total += store.getNameLength(id);
+        byte[] pool = new byte[total];
+        int end = 0;
+        for (int id = 0; id < n; id++) {
+            offsets[id] = end;
+            int length = store.getNameLength(id);
+            pool = ensure(pool, end + length);
+            store.copyName(id, pool, end);
+            byte[] folded = fold(pool, end, end + length);
+            if (folded != null) {
+                pool = ensure(pool, end + folded.length);
+                System.arraycopy(folded, 0, pool, end, folded.length);
+                length = folded.length;
+            }
+            end += length;
+        }
+        offsets[n] = end;
+        return new NameIndex(store, n, pool, offsets);
+    }
+
+    // File every name under its trigrams; any thread, once, before the index is queried
+    public NameIndex build() {
+        int buckets = 1 << BUCKET_BITS;
+        int[] starts = new int[buckets + 1];
+        int[] last = new int[buckets];           // last id filed per bucket: a name is filed once per bucket
+        Arrays.fill(last, -1);
+        for (int id = 1; id < count; id++) {     // the root shows a full path and is never matched
+            for (int i = offsets[id]; i + 3 <= offsets[id + 1]; i++) {
+                int b = bucket(pool, i);
+                if (last[b] != id) {
+                    last[b] = id;
+                    starts[b + 1]++;
+                }
+            }
+        }
+        for (int b = 0; b < buckets; b++) starts[b + 1] += starts[b];
+        int[] filed = new int[starts[buckets]];
+        int[] next = Arrays.copyOf(starts, buckets);
+        Arrays.fill(last, -1);
+        for (int id = 1; id < count; id++) {
+            for (int i = offsets[id]; i + 3 <= offsets[id + 1]; i++) {
+                int b = bucket(pool, i);
+                if (last[b] != id) {
+                    last[b] = id;
+                    filed[next[b]++] = id;
+                }
+            }
+        }
+        bucketStart = starts;
+        ids = filed;
+        return this;
+    }
+
+    public FileTreeStore getStore() {
+        return store;
+    }
+
+    // True when so many entries were appended since the copy that a new index would pay off
+    public boolean isStale() {
+        return store.size() - count > Math.max(10_000, count / 4);
+    }
+
+    // Attached entries whose name matches, in id order. Runs on the EDT: it reads the store for ids
+    // appended after the copy and to leave out entries a live refresh dropped
+    public int[] find(Query query) {
+        int[] found = new int[64];
+        int n = 0;
+        int[] candidates = candidates(query);
+        int limit = candidates != null ? candidates.length : count;
+        for (int k = candidates != null ? 0 : 1; k < limit; k++) {
+            int id = candidates != null ? candidates[k] : k;
+            if (query.matches(pool, offsets[id], offsets[id + 1])) {
+                if (n == found.length) found = Arrays.copyOf(found, n * 2);
+                found[n++] = id;
+            }
+        }
+        byte[] name = new byte[256];
+        for (int id = Math.max(1, count); id < store.size(); id++) {
+            int length = store.getNameLength(id);
+            if (length > name.length) name = new byte[length];
+            store.copyName(id, name, 0);
+            byte[] folded = fold(name, 0, length);
+            boolean match = folded != null ? query.matches(folded, 0, folded.length) : query.matches(name, 0, length);
+            if (match) {
+                if (n == found.length) found = Arrays.copyOf(found, n * 2);
+                found[n++] = id;
+            }
+        }
+        int kept = 0;
+        for (int i = 0; i < n; i++) {
+            if (store.isAttached(found[i])) found[kept++] = found[i];
+        }
+        return Arrays.copyOf(found, kept);
+    }
+
+    // Ids that contain every trigram of the query's literals (hash collisions included), or null: all
+    private int[] candidates(Query query) {
+        if (query.literals.isEmpty()) return null;
+        int[] result = null;
+        for (byte[] literal : query.literals) {
+            for (int i = 0; i + 3 <= literal.length; i++) {
+                int b = bucket(literal, i);
+                int from = bucketStart[b];
+                int to = bucketStart[b + 1];
+                result = result == null ? Arrays.copyOfRange(ids, from, to) : intersect(result, ids, from, to);
+                if (result.length == 0) return result;
+            }
+        }
+        return result;
+    }
+
+    // Ascending ids in both a and b[from, to)
+    private static int[] intersect(int[] a, int[] b, int from, int to) {
+        int[] out = new int[Math.min(a.length, to - from)];
+        int n = 0;
+        int i = 0;
+        int j = from;
+        while (i < a.length && j < to) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static int bucket(byte[] data, int i) {
+        int key = (data[i] & 0xff) << 16 | (data[i + 1] & 0xff) << 8 | (data[i + 2] & 0xff);
+        return (key * 0x9E3779B1) >>> (32 - BUCKET_BITS);
+    }
+
+    // Lower-case a UTF-8 name like Query.parse does its text: in place when it is ASCII (returns null),
+    // else into a new array, whose length may differ
+    private static byte[] fold(byte[] data, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (data[i] < 0) {
+                String name = new String(data, from, to - from, StandardCharsets.UTF_8);
+                return name.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        for (int i = from; i < to; i++) {
+            byte c = data[i];
+            if (c >= 'A' && c <= 'Z') data[i] = (byte) (c + ('a' - 'A'));
+        }
+        return null;
+    }
+
+    private static byte[] ensure(byte[] data, int needed) {
+        return needed <= data.length ? data : Arrays.copyOf(data, Math.max(needed, data.length + (data.length >> 1)));
+    }
+
+    /**
+     * Query - a parsed quick-filter text, matched against lower-cased UTF-8 names.
+     */
+    public static final class Query {
+        private final byte[] needle;       // plain text
+        private final GlobAutomaton glob;  // glob for the whole name
+        private final Pattern regex;
+        private final List<byte[]> literals = new ArrayList<>(); // text every match contains, 3+ bytes
+        private final AsciiName ascii = new AsciiName(); // reused: a query is run by one thread at a time
+
+        private Query(byte[] needle, GlobAutomaton glob, Pattern regex) {
+            this.needle = needle;
+            this.glob = glob;
+            this.regex = regex;
+        }
+
+        // IllegalArgumentException for an invalid regular expression
+        public static Query parse(String text) {
+            String t = text.trim();
+            if (t.length() >= 2 && t.startsWith("/") && t.endsWith("/")) {
+                try {
+                    return new Query(null, null, Pattern.compile(t.substring(1, t.length() - 1),
+                            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE));
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("Invalid regular expression: " + e.getDescription());
+                }
+            }
+            String lower = t.toLowerCase(Locale.ROOT);
+            if (lower.indexOf('*') < 0 && lower.indexOf('?') < 0 && lower.indexOf('[') < 0) {
+                Query q = new Query(lower.getBytes(StandardCharsets.UTF_8), null, null);
+                q.addLiteral(lower);
+                return q;
+            }
+            Query q = new Query(null, new GlobAutomaton(List.of(lower)), null);
+            // the literal runs between wildcards and classes narrow the candidates
+            StringBuilder run = new StringBuilder();
+            for (int i = 0; i < lower.length(); i++) {
+                char c = lower.charAt(i);
+                if (c == '*' || c == '?' || c == '[') {
+                    q.addLiteral(run.toString());
+                    run.setLength(0);
+                    if (c == '[') {
+                        int end = lower.indexOf(']', i + 2); // "[]...]" starts with a literal ']'
+                        i = end < 0 ? lower.length() : end;
+                    }
+                } else if (c == '\\' && i + 1 < lower.length()) {
+                    run.append(lower.charAt(++i));
+                } else {
+                    run.append(c);
+                }
+            }
+            q.addLiteral(run.toString());
+            return q;
+        }
+
+        private void addLiteral(String literal) {
+            byte[] bytes = literal.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length >= 3) literals.add(bytes);
+        }
+
+        boolean matches(byte[] name, int from, int to) {
+            if (needle != null) return indexOf(name, from, to, needle) >= 0;
+            CharSequence text = ascii.set(name, from, to) ? ascii : new String(name, from, to - from, StandardCharsets.UTF_8);
+            if (glob != null) return glob.matches(text);
+            return regex.matcher(text).find();
+        }
+
+        private static int indexOf(byte[] data, int from, int to, byte[] pattern) {
+            outer:
+            for (int i = from; i + pattern.length <= to; i++) {
+                for (int j = 0; j < pattern.length; j++) {
+                    if (data[i + j] != pattern[j]) continue outer;
+                }
+                return i;
+            }
+            return -1;
+        }
+    }
+
+    // An ASCII name in a byte array seen as characters, so most names are matched without a String
+    private static final class AsciiName implements CharSequence {
+        private byte[] data;
+        private int from;
+        private int length;
+
+        // False (and unusable) if the name has non-ASCII bytes
+        boolean set(byte[] data, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (data[i] < 0) return false;
+            }
+            this.data = data;
+            this.from = from;
+            this.length = to - from;
+            return true;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) data[from + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(data, from, length, StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+// File: ScanMonitor.java
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * ScanMonitor - follows a running scan for the status panel: passes on warnings and keeps the folder
+ * being read and the slowest directory reads.
+ */
+public class ScanMonitor implements DirectoryScanner.Listener {
+    private static final int SLOWEST = 3;
+    private static final long REPORT_NANOS = 100_000_000L; // slow reads worth mentioning: 100 ms or more
+    private static final int MAX_PATH_CHARS = 60;
+
+    private final DirectoryScanner scanner;
+    private final Consumer<String> warnings;
+    private final LongAdder readNanos = new LongAdder();
+    private volatile Path current;                 // folder read last
+    private final Path[] slowPaths = new Path[SLOWEST];
+    private final long[] slowNanos = new long[SLOWEST];
+    private final int[] slowEntries = new int[SLOWEST];
+    private volatile long slowFloor;               // fastest of the slowest reads so far (unlocked pre-check)
+
+    // warnings receives the scanner's warnings on the scanning threads
+    public ScanMonitor(DirectoryScanner scanner, Consumer<String> warnings) {
+        this.scanner = scanner;
+        this.warnings = warnings;
+        scanner.setListener(this);
+    }
+
+    @Override
+    public void warning(String message) {
+        warnings.accept(message);
+    }
+
+    @Override
+    public void folderListed(Path dir, int entries, long nanos) {
+        current = dir;
+        readNanos.add(nanos);
+        if (nanos > slowFloor) addSlow(dir, entries, nanos);
+    }
+
+    // Keep the SLOWEST longest reads, longest first
+    private synchronized void addSlow(Path dir, int entries, long nanos) {
+        int i = SLOWEST - 1;
+        if (nanos <= slowNanos[i]) return;
+        for (; i > 0 && slowNanos[i - 1] < nanos; i--) {
+            slowPaths[i] = slowPaths[i - 1];
+            slowNanos[i] = slowNanos[i - 1];
+            slowEntries[i] = slowEntries[i - 1];
+        }
+        slowPaths[i] = dir;
+        slowNanos[i] = nanos;
+        slowEntries[i] = entries;
+        slowFloor = slowNanos[SLOWEST - 1];
+    }
+
+    // "task: entries · folders · MB · entries/s · folder being read"; only reads counters, so fine once per frame
+    public String statusLine(String task) {
+        long millis = Math.max(1, scanner.getRunningMillis());
+        long entries = scanner.getEntryCount();
+        Path folder = current;
+        String where = folder == null ? "" : " · " + shorten(folder.toString());
+        return String.format("%s: %,d entries · %,d folders · %.1f MB · %,d entries/sec%s", task, entries,
+                scanner.getFolderCount(), scanner.getByteCount() / (1024.0 * 1024.0), entries * 1000 / millis, where);
+    }
+
+    // Total time spent in directory reads, summed over all threads
+    public long getReadMillis() {
+        return readNanos.sum() / 1_000_000L;
+    }
+
+    // The slowest directory reads that took long enough to matter, longest first
+    public synchronized List<String> getSlowFolders() {
+        List<String> out = new ArrayList<>();
+        for (int i = 0; i < SLOWEST && slowPaths[i] != null; i++) {
+            if (slowNanos[i] < REPORT_NANOS) break;
+            out.add(String.format("%s (%,d entries, %,d ms)", slowPaths[i], slowEntries[i], slowNanos[i] / 1_000_000L));
+        }
+        return out;
+    }
+
+    private static String shorten(String path) {
+        return path.length() <= MAX_PATH_CHARS ? path : "…" + path.substring(path.length() - MAX_PATH_CHARS + 1);
+    }
+}
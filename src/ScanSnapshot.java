@@ -0,0 +1,116 @@
+// File: ScanSnapshot.java
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.UUID;
+
+/**
+ * ScanSnapshot - saves a scanned tree and its check state to one binary file per root folder.
+ * The store arrays are written as raw native-order blocks and read back with one bulk read into a heap
+ * buffer, so reopening a large folder costs a few bulk copies instead of a scan. (The file is not mapped:
+ * a live mapping would keep save() from replacing it on Windows.) A snapshot is only used when it was
+ * written for the same root and scanner settings; it is then revalidated with DirectoryScanner.rescan,
+ * which relists only folders whose modification time changed and re-stats the files of the others.
+ */
+public class ScanSnapshot {
+    private static final long MAGIC = 0x44425F534E415031L; // "DB_SNAP1"
+    private static final int VERSION = 1;
+
+    // What a snapshot file holds
+    public static final class Loaded {
+        public final FileTreeStore store;
+        public final boolean defaultChecked;
+        public final BitSet checkFlags;
+
+        Loaded(FileTreeStore store, boolean defaultChecked, BitSet checkFlags) {
+            this.store = store;
+            this.defaultChecked = defaultChecked;
+            this.checkFlags = checkFlags;
+        }
+    }
+
+    private final Path directory;
+
+    public ScanSnapshot(Path directory) {
+        this.directory = directory;
+    }
+
+    // ~/.directory-browser/snapshots
+    public static Path defaultDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".directory-browser", "snapshots");
+    }
+
+    // Snapshot file of a root folder (name derived from its absolute path)
+    public Path fileFor(Path root) {
+        String key = root.toAbsolutePath().toString();
+        return directory.resolve(UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)) + ".snap");
+    }
+
+    // Write store and check flags atomically (temp file, then rename)
+    public void save(FileTreeStore store, String settingsKey, boolean defaultChecked, BitSet checkFlags) throws IOException {
+        Files.createDirectories(directory);
+        Path target = fileFor(store.getRootPath());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            byte[] settings = settingsKey.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer head = ByteBuffer.allocate(20 + settings.length);
+            head.putLong(MAGIC).putInt(VERSION)
+                    .putInt(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 1 : 0)
+                    .putInt(settings.length).put(settings).flip();
+            writeFully(out, head);
+
+            store.write(out);
+
+            long[] words = checkFlags.toLongArray();
+            ByteBuffer check = ByteBuffer.allocate(5 + words.length * 8).order(ByteOrder.nativeOrder());
+            check.put((byte) (defaultChecked ? 1 : 0)).putInt(words.length);
+            check.asLongBuffer().put(words);
+            check.position(check.position() + words.length * 8).flip();
+            writeFully(out, check);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Load the snapshot of root, or null when there is none or it was written with other settings
+    public Loaded load(Path root, String settingsKey) throws IOException {
+        Path file = fileFor(root);
+        if (!Files.isRegularFile(file)) return null;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(Math.toIntExact(in.size()));
+            while (buf.hasRemaining()) {
+                if (in.read(buf) < 0) return null; // shrank while being read
+            }
+            buf.flip();
+            if (buf.remaining() < 20 || buf.getLong() != MAGIC || buf.getInt() != VERSION) return null;
+            ByteOrder order = buf.getInt() == 1 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            byte[] settings = new byte[buf.getInt()];
+            buf.get(settings);
+            if (!new String(settings, StandardCharsets.UTF_8).equals(settingsKey)) return null;
+            buf.order(order); // the header is big-endian, the arrays native
+
+            FileTreeStore store = FileTreeStore.read(buf);
+            if (!store.getRootPath().equals(root.toAbsolutePath())) return null;
+            boolean defaultChecked = buf.get() == 1;
+            long[] words = new long[buf.getInt()];
+            buf.asLongBuffer().get(words);
+            return new Loaded(store, defaultChecked, BitSet.valueOf(words));
+        } catch (RuntimeException e) {
+            // truncated or corrupt file: treat as missing
+            return null;
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) out.write(buf);
+    }
+}
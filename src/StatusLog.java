@@ -0,0 +1,208 @@
+// File: StatusLog.java
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * StatusLog - the status log panel. Any thread may post lines; the EDT shows them in batches.
+ * Lines go into a fixed-size lock-free ring (producers claim a slot with a CAS on the write index)
+ * that a Swing timer drains once per frame into a single append, so a burst of messages costs one
+ * document update per frame instead of one per line. When the ring is full, lines are dropped and
+ * counted. The text area keeps the last MAX_LINES lines.
+ * Long tasks report counters to one progress line (done/total, MB, rate, ETA) instead of a line per
+ * file, or supply their own line, which is formatted once per frame; per-file detail can go to a log
+ * file that its own thread writes.
+ */
+public class StatusLog {
+    private static final int CAPACITY = 4096;          // ring slots, power of two
+    private static final int FRAME_MILLIS = 50;
+    private static final int MAX_LINES = 5000;
+    private static final String END_OF_LOG = new String("end"); // identity sentinel for the log writer
+
+    private final JTextArea area;
+    private final JLabel progressLabel;
+    private final AtomicReferenceArray<String> ring = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLong writeIndex = new AtomicLong();
+    private volatile long readIndex;                  // advanced by the EDT only
+    private final AtomicLong dropped = new AtomicLong();
+
+    // Progress of the running task (null line: none)
+    private volatile Supplier<String> progressLine;
+    private volatile String task;
+    private volatile long totalFiles;
+    private volatile long totalBytes;
+    private volatile long startNanos;
+    private final AtomicLong filesDone = new AtomicLong();
+    private final AtomicLong bytesDone = new AtomicLong();
+
+    // Optional log file
+    private volatile BlockingQueue<String> logQueue;
+    private Thread logWriter;
+
+    public StatusLog(JTextArea area, JLabel progressLabel) {
+        this.area = area;
+        this.progressLabel = progressLabel;
+        progressLabel.setVisible(false);
+        new Timer(FRAME_MILLIS, e -> drain()).start();
+    }
+
+    // Show a line (and write it to the log file, if one is open); safe from any thread
+    public void info(String line) {
+        detail(line);
+        while (true) {
+            long w = writeIndex.get();
+            if (w - readIndex >= CAPACITY) {
+                dropped.incrementAndGet();
+                return;
+            }
+            if (writeIndex.compareAndSet(w, w + 1)) {
+                ring.set((int) (w & (CAPACITY - 1)), line);
+                return;
+            }
+        }
+    }
+
+    // Write a line to the log file only (per-file detail); dropped when no log file is open
+    public void detail(String line) {
+        BlockingQueue<String> queue = logQueue;
+        if (queue == null) return;
+        try {
+            queue.put(line);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Start the progress line of a task with known totals
+    public void startProgress(String taskName, long files, long bytes) {
+        filesDone.set(0);
+        bytesDone.set(0);
+        totalFiles = files;
+        totalBytes = bytes;
+        startNanos = System.nanoTime();
+        task = taskName;
+        progressLine = this::countersLine;
+    }
+
+    // Start a progress line computed by the task itself (called on the EDT once per frame)
+    public void startProgress(Supplier<String> line) {
+        progressLine = line;
+    }
+
+    // One more file done
+    public void progress(long bytes) {
+        filesDone.incrementAndGet();
+        bytesDone.addAndGet(bytes);
+    }
+
+    public void endProgress() {
+        progressLine = null;
+    }
+
+    // Send log lines to a file until closeLogFile; written by a background thread
+    public synchronized void openLogFile(Path file) throws IOException {
+        closeLogFile();
+        BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        BlockingQueue<String> queue = new LinkedBlockingQueue<>(64 * 1024);
+        logWriter = new Thread(() -> {
+            try (BufferedWriter w = out) {
+                for (String line; (line = queue.take()) != END_OF_LOG; ) {
+                    w.write(line);
+                    w.newLine();
+                    if (queue.isEmpty()) w.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                logQueue = null; // stop queueing; the log is incomplete
+            }
+        }, "status-log-writer");
+        logWriter.setDaemon(true);
+        logWriter.start();
+        logQueue = queue;
+    }
+
+    // Flush and close the log file (waits briefly for the writer to catch up)
+    public synchronized void closeLogFile() {
+        BlockingQueue<String> queue = logQueue;
+        logQueue = null;
+        if (queue == null) return;
+        queue.offer(END_OF_LOG);
+        try {
+            logWriter.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logWriter = null;
+    }
+
+    // One frame on the EDT: append everything queued in one go, trim, refresh the progress line
+    private void drain() {
+        StringBuilder batch = null;
+        long r = readIndex;
+        while (r < writeIndex.get()) {
+            int slot = (int) (r & (CAPACITY - 1));
+            String line = ring.getAndSet(slot, null);
+            if (line == null) break; // claimed but not yet stored: next frame
+            if (batch == null) batch = new StringBuilder();
+            batch.append(line).append('\n');
+            r++;
+        }
+        readIndex = r;
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            if (batch == null) batch = new StringBuilder();
+            batch.append(String.format("… %,d messages not shown (log busy)%n", lost));
+        }
+        if (batch != null) {
+            area.append(batch.toString());
+            trim();
+            area.setCaretPosition(area.getDocument().getLength());
+        }
+        updateProgress();
+    }
+
+    private void trim() {
+        int excess = area.getLineCount() - 1 - MAX_LINES; // the text ends with a newline
+        if (excess <= 0) return;
+        try {
+            area.replaceRange("", 0, area.getLineStartOffset(excess));
+        } catch (BadLocationException e) {
+            // cannot happen: excess is below the line count
+        }
+    }
+
+    private void updateProgress() {
+        Supplier<String> line = progressLine;
+        if (line == null) {
+            if (progressLabel.isVisible()) progressLabel.setVisible(false);
+            return;
+        }
+        progressLabel.setText(line.get());
+        if (!progressLabel.isVisible()) progressLabel.setVisible(true);
+    }
+
+    // done / total files, MB, rate and ETA of a task started with totals
+    private String countersLine() {
+        long files = filesDone.get();
+        long bytes = bytesDone.get();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        double rate = seconds > 0 ? bytes / (1024.0 * 1024.0) / seconds : 0;
+        String eta = "";
+        if (bytes > 0 && totalBytes > bytes) {
+            long left = (long) (seconds * (totalBytes - bytes) / bytes);
+            eta = String.format(" · ETA %d:%02d", left / 60, left % 60);
+        }
+        return String.format("%s: %,d / %,d files · %.1f / %.1f MB · %.1f MB/s%s", task, files,
+                totalFiles, bytes / (1024.0 * 1024.0), totalBytes / (1024.0 * 1024.0), rate, eta);
+    }
+}
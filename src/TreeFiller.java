@@ -0,0 +1,70 @@
+// File: TreeFiller.java
+
+import javax.swing.*;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * TreeFiller - grows the tree on screen while a streaming scan (DirectoryScanner.scanStreaming) runs.
+ */
+public class TreeFiller implements Consumer<DirectoryScanner.Listing> {
+    private static final int FRAME_MILLIS = 40;
+    private static final long BUDGET_NANOS = 15_000_000L; // EDT time per frame spent on listings
+
+    private final JCheckBoxTree tree;
+    private final FileTreeModel model;
+    private final FileTreeStore store;
+    // filled by the scanning threads
+    private final Queue<DirectoryScanner.Listing> queue = new ConcurrentLinkedQueue<>();
+    private final Timer timer;                    // drains the queue once per frame, so the EDT stays responsive
+
+    // model must be on screen in tree, holding just the (unlisted) root
+    public TreeFiller(JCheckBoxTree tree, FileTreeModel model) {
+        this.tree = tree;
+        this.model = model;
+        this.store = model.getStore();
+        this.timer = new Timer(FRAME_MILLIS, e -> drain(BUDGET_NANOS));
+        timer.start();
+    }
+
+    // Scanner side: any thread; the listing is only queued here
+    @Override
+    public void accept(DirectoryScanner.Listing listing) {
+        queue.add(listing);
+    }
+
+    // True while this filler is growing model (lazy listing must leave its folders to the scan)
+    public boolean fills(FileTreeModel m) {
+        return m == model && timer.isRunning();
+    }
+
+    // The scan has ended (or was cancelled): apply what is queued and stop. Folders whose listing
+    // never came stay unlisted and can be listed lazily
+    public void finish() {
+        timer.stop();
+        drain(Long.MAX_VALUE);
+    }
+
+    // One frame on the EDT; listings come parent first, so every folder is in the store when its turn comes.
+    // A folder shows its loading placeholder until then, and checks made meanwhile pass on to its children.
+    // Insert events go out per folder, the check-state notification once per frame
+    private void drain(long budget) {
+        if (tree.getStore() != store) {
+            // another tree was loaded meanwhile
+            timer.stop();
+            queue.clear();
+            return;
+        }
+        long start = System.nanoTime();
+        DirectoryScanner.Listing listing = queue.poll();
+        while (listing != null) {
+            int folder = listing.getFolderId();
+            listing.appended(store.append(folder, listing.getBlock()));
+            model.fireChildrenListed(folder);
+            DirectoryScanner.Listing next = System.nanoTime() - start < budget ? queue.poll() : null;
+            tree.childrenListed(folder, next == null);
+            listing = next;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+// File: CheckStateTest.java
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * CheckStateTest - selection totals of CheckState on a small in-memory tree; exits with status 1 on failures.
+ * Run: javac -d bin src/*.java test/*.java && java -cp bin CheckStateTest
+ */
+public class CheckStateTest {
+    private static int failures = 0;
+
+    public static void main(String[] args) {
+        // root/ with an unlisted folder "a" and a 10-byte file "b"
+        FileTreeStore store = new FileTreeStore(dir("root"), true);
+        CheckState state = new CheckState();
+        state.reset(store, true);
+        store.append(0, FileTreeStore.Block.of(List.of(dir("root/a"), file("root/b", 10)), new boolean[]{true, false}));
+        state.childrenListed(0);
+        expect("listed: files", state.getCheckedFileCount(), 1);
+        expect("listed: unlisted", state.getCheckedUnlistedCount(), 1);
+
+        // a live refresh gives the root an explicit child list
+        state.replaceChildren(0, new int[]{1, 2}, new int[0], true);
+        expect("refreshed: files", state.getCheckedFileCount(), 1);
+        expect("refreshed: unlisted", state.getCheckedUnlistedCount(), 1);
+
+        // toggling the refreshed folder reaches its unlisted child
+        state.setSubtree(0, false);
+        expect("unchecked: files", state.getCheckedFileCount(), 0);
+        expect("unchecked: unlisted", state.getCheckedUnlistedCount(), 0);
+        expect("unchecked: bytes", state.getCheckedBytes(), 0);
+        state.setSubtree(0, true);
+        expect("checked: files", state.getCheckedFileCount(), 1);
+        expect("checked: unlisted", state.getCheckedUnlistedCount(), 1);
+        expect("checked: bytes", state.getCheckedBytes(), 10);
+
+        // select-all and deselect-all keep the totals
+        state.setAll(false);
+        expect("none: files", state.getCheckedFileCount(), 0);
+        expect("none: unlisted", state.getCheckedUnlistedCount(), 0);
+        state.setAll(true);
+        expect("all: files", state.getCheckedFileCount(), 1);
+        expect("all: unlisted", state.getCheckedUnlistedCount(), 1);
+        expect("all: bytes", state.getCheckedBytes(), 10);
+
+        if (failures > 0) {
+            System.out.println(failures + " failed");
+            System.exit(1);
+        }
+        System.out.println("All check state cases passed");
+    }
+
+    private static FileEntry dir(String path) {
+        return new FileEntry(Path.of(path), FileEntry.Type.DIRECTORY, 0L, 0L, path, false);
+    }
+
+    private static FileEntry file(String path, long size) {
+        return new FileEntry(Path.of(path), FileEntry.Type.FILE, size, 0L, path, false);
+    }
+
+    private static void expect(String what, long actual, long expected) {
+        if (actual != expected) {
+            failures++;
+            System.out.println("FAIL " + what + ": expected " + expected + ", got " + actual);
+        }
+    }
+}
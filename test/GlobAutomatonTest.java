@@ -0,0 +1,65 @@
+// File: GlobAutomatonTest.java
+
+import java.util.List;
+
+/**
+ * GlobAutomatonTest - pattern/path cases for GlobAutomaton; exits with status 1 on the first failures.
+ * Run: javac -d bin src/*.java test/*.java && java -cp bin GlobAutomatonTest
+ */
+public class GlobAutomatonTest {
+    private static int failures = 0;
+
+    public static void main(String[] args) {
+        // "**/" matches zero or more whole folders, only at the start of a path segment
+        check("src/**/A.java", "src/A.java", true);
+        check("src/**/A.java", "src/x/y/A.java", true);
+        check("src/**/A.java", "src/fooA.java", false);
+        check("src/**/A.java", "src/x/fooA.java", false);
+        check("**/test/**", "test/x", true);
+        check("**/test/**", "a/b/test/x", true);
+        check("**/test/**", "atest/x", false);
+        check("**/test/**", "a/btest/x", false);
+        check("**/*.java", "A.java", true);
+        check("**/*.java", "a/b/A.java", true);
+        check("a/**/**/b", "a/b", true);
+        check("a/**/**/b", "a/x/y/b", true);
+        check("a/**/**/b", "a/xb", false);
+
+        // "**" without a slash crosses folders; '*' and '?' do not
+        check("src/**", "src/a/b.txt", true);
+        check("*.java", "A.java", true);
+        check("*.java", "a/A.java", false);
+        check("?.txt", "a.txt", true);
+        check("?.txt", "/.txt", false);
+
+        // classes and escapes
+        check("[a-c]x", "bx", true);
+        check("[!a-c]x", "bx", false);
+        check("\\*x", "*x", true);
+        check("\\*x", "ax", false);
+
+        // several patterns in one automaton
+        GlobAutomaton many = new GlobAutomaton(List.of("**/test/**", "*.md", "src/**/A.java"));
+        expect("many: a/test/x", many.matches("a/test/x"), true);
+        expect("many: README.md", many.matches("README.md"), true);
+        expect("many: atest/x", many.matches("atest/x"), false);
+        expect("many: src/fooA.java", many.matches("src/fooA.java"), false);
+
+        if (failures > 0) {
+            System.out.println(failures + " failed");
+            System.exit(1);
+        }
+        System.out.println("All glob cases passed");
+    }
+
+    private static void check(String glob, String path, boolean expected) {
+        expect(glob + " ~ " + path, new GlobAutomaton(List.of(glob)).matches(path), expected);
+    }
+
+    private static void expect(String what, boolean actual, boolean expected) {
+        if (actual != expected) {
+            failures++;
+            System.out.println("FAIL " + what + ": expected " + expected);
+        }
+    }
+}